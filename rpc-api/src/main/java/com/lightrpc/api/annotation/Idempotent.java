@@ -0,0 +1,18 @@
+package com.lightrpc.api.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 幂等方法注解
+ * 作用：标注在服务接口的方法上，表示同一个请求执行多次和执行一次效果相同 (例如只读查询)
+ * 客户端只会对幂等方法失败重试和发送对冲请求，同一个请求可能被多个实例执行
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+}
@@ -0,0 +1,86 @@
+package com.lightrpc.api.stream;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 流式调用的数据流
+ * 1. 作为服务方法的返回值：服务端流，服务端逐个发送元素，客户端边收边处理
+ * 2. 作为服务方法的参数 (最多一个)：客户端流，客户端逐个发送元素，服务端边收边处理
+ * 两者同时使用就是双向流
+ * 消费方按迭代器的方式读取，发送方按消费方的读取速度发送 (基于额度的流控)，两端缓存的元素数都有上限
+ * 不再需要剩余元素时调用 close，对端会停止发送
+ */
+public interface RpcStream<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * 结束读取 (读完之后调用不会有任何效果)
+     */
+    @Override
+    void close();
+
+    /**
+     * 用迭代器创建数据流 (服务端返回结果、客户端传参时使用)
+     * 元素在发送时才向迭代器获取；迭代器实现了 AutoCloseable 时，数据流结束或被取消后会关闭它
+     */
+    static <T> RpcStream<T> of(Iterator<T> iterator) {
+        return new RpcStream<T>() {
+
+            private boolean closed;
+
+            @Override
+            public boolean hasNext() {
+                return !closed && iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (iterator instanceof AutoCloseable) {
+                    try {
+                        ((AutoCloseable) iterator).close();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("关闭数据源失败", e);
+                    }
+                }
+            }
+        };
+    }
+
+    static <T> RpcStream<T> of(Iterable<T> iterable) {
+        return of(iterable.iterator());
+    }
+
+    @SafeVarargs
+    static <T> RpcStream<T> of(T... items) {
+        // 按下标读取，数组不传给其它方法
+        return of(new Iterator<T>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < items.length;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return items[index++];
+            }
+        });
+    }
+}
@@ -1,5 +1,22 @@
 package com.lightrpc.api.user;
 
+import com.lightrpc.api.annotation.Idempotent;
+import com.lightrpc.api.stream.RpcStream;
+
+import java.util.concurrent.CompletableFuture;
+
 public interface UserService {
+    @Idempotent
     String getUser(String username);
+
+    /**
+     * 异步版本：客户端不阻塞等待，收到响应时 Future 完成
+     */
+    @Idempotent
+    CompletableFuture<String> getUserAsync(String username);
+
+    /**
+     * 服务端流：逐个返回用户名，客户端边收边处理
+     */
+    RpcStream<String> listUsers(String prefix, int count);
 }
@@ -0,0 +1,34 @@
+package com.lightrpc.common.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 压缩算法接口
+ * 采用包装流的方式，和流式序列化配合使用，不需要把消息体整体拷贝成 byte[]
+ */
+public interface Compressor {
+
+    /**
+     * 压缩算法编号，对应协议头压缩字段
+     * com.lightrpc.common.enums.CompressTypeEnum
+     * @return
+     */
+    byte getCode();
+
+    /**
+     * 包装输出流：写入返回流的数据会被压缩后写到 out
+     * 写完之后必须调用返回流的 close()，把剩余数据刷出 (不会关闭 out)
+     * @param out
+     * @return
+     */
+    OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * 包装输入流：从返回流读到的是解压后的数据
+     * @param in
+     * @return
+     */
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,57 @@
+package com.lightrpc.common.compress;
+
+import com.lightrpc.common.compress.impl.DeflateCompressor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ServiceLoader;
+
+/**
+ * 压缩算法注册表
+ * 和 SerializerFactory 一样按编号索引，扩展方式：
+ * 在 META-INF/services/com.lightrpc.common.compress.Compressor 中声明自定义实现
+ */
+@Slf4j
+public class CompressorFactory {
+
+    /**
+     * 协议头里压缩编号只占 4 bit，16 个槽位覆盖全部取值 (0 表示不压缩)
+     */
+    private static volatile Compressor[] compressors = new Compressor[16];
+
+    static {
+        register(new DeflateCompressor());
+
+        for (Compressor compressor : ServiceLoader.load(Compressor.class)) {
+            register(compressor);
+        }
+    }
+
+    public static synchronized void register(Compressor compressor) {
+        int code = compressor.getCode();
+        if (code <= 0 || code > 15) {
+            throw new IllegalArgumentException("压缩算法编号必须在 1~15 之间: " + code);
+        }
+        Compressor[] copy = compressors.clone();
+        if (copy[code] != null) {
+            log.info("压缩算法 [{}] 覆盖了已注册的 [{}]，code: {}",
+                    compressor.getClass().getName(), copy[code].getClass().getName(), code);
+        }
+        copy[code] = compressor;
+        compressors = copy;
+    }
+
+    /**
+     * 本端是否有这个编号的压缩算法
+     */
+    public static boolean isSupported(byte code) {
+        return code > 0 && code < 16 && compressors[code] != null;
+    }
+
+    public static Compressor getCompressor(byte code) {
+        Compressor compressor = code >= 0 && code < 16 ? compressors[code] : null;
+        if (compressor == null) {
+            throw new IllegalArgumentException("不支持的压缩类型: " + code);
+        }
+        return compressor;
+    }
+}
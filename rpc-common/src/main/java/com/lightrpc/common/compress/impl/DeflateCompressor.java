@@ -0,0 +1,62 @@
+package com.lightrpc.common.compress.impl;
+
+import com.lightrpc.common.compress.Compressor;
+import com.lightrpc.common.enums.CompressTypeEnum;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deflate (zlib) 压缩，JDK 自带，不需要额外依赖
+ * Deflater / Inflater 内部持有 native 内存，创建和销毁的代价远大于压缩一个小包，
+ * 所以每个线程复用一个。只有协议编解码会用到压缩，都在 Netty 的 IO 线程上执行 (线程数固定，随 EventLoop 一起销毁)，
+ * 服务端的请求体也是在 IO 线程上、限流检查通过之后才解压，不会在业务线程或虚拟线程上各自创建一个
+ */
+public class DeflateCompressor implements Compressor {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public byte getCode() {
+        return CompressTypeEnum.DEFLATE.getCode();
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        // 传入自己的 Deflater 时，DeflaterOutputStream 不会 end() 它，可以继续复用
+        DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+        return new FilterOutputStream(deflaterOut) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                deflaterOut.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // 只 finish，不关闭下层的输出流
+                deflaterOut.finish();
+                deflaterOut.flush();
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,82 @@
+package com.lightrpc.common.constants;
+
+/**
+ * 协议常量
+ */
+public class RpcConstants {
+
+    /**
+     * 魔数，用于校验协议是否合法
+     */
+    public static final int MAGIC_NUMBER = 0xCAFEBABE;
+
+    /**
+     * 协议版本号
+     * 1: 初始版本 (19 字节头)
+     * 2: 增加压缩字段 (20 字节头)
+     */
+    public static final byte VERSION = 2;
+
+    /**
+     * 协议头长度: 魔数4 + 版本1 + 序列化1 + 压缩1 + 类型1 + 请求ID8 + 长度4
+     */
+    public static final int HEADER_LENGTH = 20;
+
+    /**
+     * 长度字段在协议头中的偏移量
+     */
+    public static final int LENGTH_FIELD_OFFSET = 16;
+
+    /**
+     * 最大帧长度 8MB
+     */
+    public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
+
+    /**
+     * 分片消息体里原消息类型和结束标记的长度
+     */
+    public static final int CHUNK_HEADER_LENGTH = 2;
+
+    /**
+     * 默认分片大小：编码后消息体超过 1MB 时拆成多个分片发送
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * 默认分片拼接内存上限：每个连接上还没收齐的分片最多占用 64MB
+     */
+    public static final int DEFAULT_MAX_CHUNKED_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * 默认压缩阈值：消息体小于 4KB 时不压缩，小包压缩收益低，反而浪费 CPU
+     */
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 4 * 1024;
+
+    /**
+     * 流式调用的默认额度：接收方一开始允许发送方发送的元素个数，处理完一半后再补充
+     */
+    public static final int DEFAULT_STREAM_WINDOW = 64;
+
+    /**
+     * 数据流线程池的线程数 (进程内客户端和服务端共享)，同时在读数据源的数据流不超过这么多
+     */
+    public static final int STREAM_THREADS = 200;
+
+    /**
+     * 数据流线程池的队列长度，排满后新的数据流直接失败
+     */
+    public static final int STREAM_QUEUE_SIZE = 1024;
+
+    /**
+     * 默认服务版本号，与 @LightRpcService / @LightRpcClient 的默认值一致
+     */
+    public static final String DEFAULT_VERSION = "1.0";
+
+    /**
+     * 默认服务分组 (不分组)
+     */
+    public static final String DEFAULT_GROUP = "";
+
+    private RpcConstants() {
+    }
+}
@@ -0,0 +1,17 @@
+package com.lightrpc.common.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public enum CompressTypeEnum {
+
+    NONE((byte) 0),
+    DEFLATE((byte) 1);
+
+    /**
+     * 压缩算法编号，协议头里只占 4 bit，取值范围 0~15
+     */
+    private final byte code;
+}
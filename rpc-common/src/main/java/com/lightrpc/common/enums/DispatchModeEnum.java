@@ -0,0 +1,23 @@
+package com.lightrpc.common.enums;
+
+/**
+ * 服务端业务派发模式：服务方法在哪个线程上执行
+ */
+public enum DispatchModeEnum {
+
+    /**
+     * 直接在 Netty IO 线程上执行，只适合极快、不阻塞的方法
+     * 一个慢方法会卡住同一个 EventLoop 上的所有连接
+     */
+    IO_THREAD,
+
+    /**
+     * 投递到有界业务线程池 (默认)
+     */
+    THREAD_POOL,
+
+    /**
+     * 每个请求一个虚拟线程 (需要 JDK 21+，低版本自动退回 THREAD_POOL)
+     */
+    VIRTUAL_THREAD
+}
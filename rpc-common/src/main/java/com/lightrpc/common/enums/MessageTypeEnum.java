@@ -6,7 +6,32 @@ import lombok.Getter;
 public enum MessageTypeEnum {
     HEART((byte) 0),
     REQUEST((byte) 1),
-    RESPONSE((byte) 2);
+    RESPONSE((byte) 2),
+
+    /**
+     * 流式调用：一个元素，请求 ID 和发起调用的请求相同
+     */
+    STREAM_DATA((byte) 3),
+
+    /**
+     * 流式调用：发送方没有更多元素了 (正常结束或者出错)
+     */
+    STREAM_END((byte) 4),
+
+    /**
+     * 流式调用：接收方不再需要剩余元素，发送方停止发送
+     */
+    STREAM_CANCEL((byte) 5),
+
+    /**
+     * 流式调用：接收方处理完一批元素，给发送方增加发送额度
+     */
+    STREAM_WINDOW((byte) 6),
+
+    /**
+     * 大消息的一个分片：消息体是 [原消息类型 1B][是否最后一片 1B][原消息体的一段]，请求 ID 和原消息相同
+     */
+    CHUNK((byte) 7);
 
     /**
      * 消息类型
@@ -16,4 +41,11 @@ public enum MessageTypeEnum {
     MessageTypeEnum(byte type) {
         this.type = type;
     }
+
+    /**
+     * 是否是流式调用的消息 (消息体是 StreamFrame)
+     */
+    public static boolean isStream(byte type) {
+        return type >= STREAM_DATA.type && type <= STREAM_WINDOW.type;
+    }
 }
@@ -0,0 +1,28 @@
+package com.lightrpc.common.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public enum ResponseCodeEnum {
+
+    SUCCESS(200, "Success"),
+    FAIL(500, "Fail"),
+    /**
+     * 服务端并发超过自适应上限，请求在反序列化之前就被拒绝，客户端可以安全地重试其它实例
+     */
+    TOO_MANY_REQUESTS(429, "Too many requests"),
+    /**
+     * 业务线程池已满，请求没有被执行，客户端可以安全地重试其它实例
+     */
+    SERVER_BUSY(503, "Server busy"),
+    /**
+     * 等待响应超时 (客户端本地产生)
+     */
+    TIMEOUT(504, "Timeout");
+
+    private final int code;
+
+    private final String message;
+}
@@ -8,7 +8,7 @@ import lombok.Getter;
 public enum SerializerCodeEnum {
 
     JSON((byte) 1),
-    PROTOBUF((byte) 2); // 预留
+    PROTOBUF((byte) 2); // Protostuff 实现，Protobuf 编码格式
 
     private final byte code;
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.lightrpc.common.enums;
+
+/**
+ * 网络传输实现：Netty 使用哪种 IO 模型
+ */
+public enum TransportTypeEnum {
+
+    /**
+     * 自动选择 (默认)：Linux 上 native epoll 可用时用 epoll，否则用 NIO
+     */
+    AUTO,
+
+    /**
+     * JDK NIO，所有平台都可用
+     */
+    NIO,
+
+    /**
+     * Linux native epoll，比 NIO 少一层 Selector 封装，支持边缘触发，不可用时退回 NIO
+     */
+    EPOLL,
+
+    /**
+     * Linux io_uring (需要额外引入 netty-incubator-transport-native-io_uring 和 5.1+ 内核)，不可用时退回 epoll / NIO
+     */
+    IO_URING
+}
@@ -0,0 +1,31 @@
+package com.lightrpc.common.exception;
+
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import lombok.Getter;
+
+/**
+ * RPC 调用异常
+ * code 对应 ResponseCodeEnum，客户端本地产生的异常 (如超时) 也使用对应的状态码
+ */
+@Getter
+public class RpcException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+
+    public RpcException(ResponseCodeEnum code, String message) {
+        super(message);
+        this.code = code.getCode();
+    }
+
+    public RpcException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public RpcException(ResponseCodeEnum code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code.getCode();
+    }
+}
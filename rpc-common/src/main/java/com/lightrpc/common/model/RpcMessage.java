@@ -9,7 +9,7 @@ public class RpcMessage {
      * 请求 ID (用于链路追踪和异步匹配)
      * 对应协议头的 Request ID
      */
-    private Long requestId;
+    private long requestId;
 
     /**
      * 消息类型 (1: 请求, 2: 响应, 3: 心跳)
@@ -26,7 +26,10 @@ public class RpcMessage {
     private byte codec;
 
     /**
-     * 压缩类型 (可选，预留扩展，例如 1: Gzip)
+     * 压缩类型 (0: 不压缩, 1: Deflate)
+     * com.lightrpc.common.enums.CompressTypeEnum
+     * 发送时表示"消息体超过阈值就用这种算法压缩"，小包不会压缩
+     * 接收时表示对端能接受的压缩算法，服务端按它来压缩响应
      */
     private byte compress;
 
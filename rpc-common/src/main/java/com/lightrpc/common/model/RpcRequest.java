@@ -1,5 +1,6 @@
 package com.lightrpc.common.model;
 
+import com.lightrpc.common.util.ServiceKeyUtil;
 import lombok.Data;
 import lombok.ToString;
 
@@ -31,4 +32,33 @@ public class RpcRequest {
      * 参数值列表
      */
     private Object[] parameters;
+
+    /**
+     * 剩余超时时间 (毫秒)，0 或 null 表示不限
+     * 传相对时间而不是绝对时间戳，避免两台机器时钟不一致
+     * 服务端从收到请求开始计时，超时后客户端已经放弃等待，服务端不再执行
+     */
+    private Long timeout;
+
+    /**
+     * 服务版本号，为空时按默认版本处理
+     */
+    private String version;
+
+    /**
+     * 服务分组，为空表示不分组
+     */
+    private String group;
+
+    /**
+     * 流式调用：客户端接收结果流的初始额度 (服务端一开始最多发送这么多个元素)，返回值不是数据流时为 null
+     */
+    private Integer streamWindow;
+
+    /**
+     * 服务标识 (接口:版本:分组)，服务端和负载均衡按它区分同一接口的不同版本
+     */
+    public String getServiceKey() {
+        return ServiceKeyUtil.build(interfaceName, version, group);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.lightrpc.common.model;
+
+import lombok.Data;
+
+/**
+ * 流式调用消息 (STREAM_DATA / STREAM_END / STREAM_CANCEL / STREAM_WINDOW) 的消息体
+ * 属于哪个调用由协议头的请求 ID 决定，每种消息只用到其中的部分字段
+ */
+@Data
+public class StreamFrame {
+
+    /**
+     * STREAM_DATA：元素
+     */
+    private Object data;
+
+    /**
+     * STREAM_WINDOW：增加的发送额度 (元素个数)
+     */
+    private Integer credits;
+
+    /**
+     * STREAM_END：结束状态码，见 ResponseCodeEnum
+     */
+    private Integer code;
+
+    /**
+     * STREAM_END / STREAM_CANCEL：出错或取消的原因
+     */
+    private String message;
+}
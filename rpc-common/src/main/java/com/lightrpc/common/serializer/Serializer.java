@@ -1,7 +1,20 @@
 package com.lightrpc.common.serializer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
 public interface Serializer {
 
+    /**
+     * 序列化算法编号，对应协议头的 Serializer 字段
+     * com.lightrpc.common.enums.SerializerCodeEnum
+     * @return
+     */
+    byte getCodec();
+
     /**
      * 序列化
      * @param object
@@ -16,4 +29,43 @@ public interface Serializer {
      * @return
      */
     <T> T deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 流式序列化：直接写入输出流 (编码器传入的是包装了 ByteBuf 的 ByteBufOutputStream)
+     * 默认实现先序列化成 byte[] 再整体写入，具体实现应当覆盖它，省掉中间数组
+     * @param object
+     * @param out
+     */
+    default void serialize(Object object, OutputStream out) throws IOException {
+        out.write(serialize(object));
+    }
+
+    /**
+     * 流式反序列化：直接从输入流读取 (解码器传入的是包装了 ByteBuf 的 ByteBufInputStream)
+     * 输入流在消息体结束处返回 EOF
+     * @param in
+     * @param length 协议头里的消息体长度 (压缩时是压缩后的长度)，只作为容量提示，0 表示没有消息体
+     * @param clazz
+     * @return
+     */
+    default <T> T deserialize(InputStream in, int length, Class<T> clazz) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(length);
+        byte[] buffer = new byte[Math.min(Math.max(length, 256), 8192)];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return deserialize(bytes.toByteArray(), clazz);
+    }
+
+    /**
+     * 把反序列化出来的值转换成声明的类型 (服务端按方法参数类型转换 Object[] 里的参数)
+     * 带类型信息的序列化方式得到的就是原来的对象，默认直接返回
+     * @param value 反序列化出来的值
+     * @param type  声明的类型
+     * @return
+     */
+    default Object convert(Object value, Type type) {
+        return value;
+    }
 }
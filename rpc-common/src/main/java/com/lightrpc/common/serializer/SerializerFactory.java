@@ -0,0 +1,55 @@
+package com.lightrpc.common.serializer;
+
+import com.lightrpc.common.serializer.impl.JsonSerializer;
+import com.lightrpc.common.serializer.impl.ProtostuffSerializer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ServiceLoader;
+
+/**
+ * 序列化器注册表
+ * 以协议头里的 codec 字节为下标，所有序列化器都是单例，编解码时不再 new 对象
+ * 扩展方式：实现 Serializer 接口，并在 META-INF/services/com.lightrpc.common.serializer.Serializer 中声明
+ */
+@Slf4j
+public class SerializerFactory {
+
+    /**
+     * codec 只有 1 个字节，256 个槽位覆盖全部取值
+     * 注册时整体替换数组 (Copy-On-Write)，读取时无锁
+     */
+    private static volatile Serializer[] serializers = new Serializer[256];
+
+    static {
+        // 内置实现
+        register(new JsonSerializer());
+        register(new ProtostuffSerializer());
+
+        // SPI 扩展实现 (编号相同时会覆盖内置实现)
+        for (Serializer serializer : ServiceLoader.load(Serializer.class)) {
+            register(serializer);
+        }
+    }
+
+    public static synchronized void register(Serializer serializer) {
+        int index = serializer.getCodec() & 0xFF;
+        Serializer[] copy = serializers.clone();
+        if (copy[index] != null) {
+            log.info("序列化器 [{}] 覆盖了已注册的 [{}]，codec: {}",
+                    serializer.getClass().getName(), copy[index].getClass().getName(), index);
+        }
+        copy[index] = serializer;
+        serializers = copy;
+    }
+
+    /**
+     * 根据协议头的 codec 字节获取序列化器
+     */
+    public static Serializer getSerializer(byte codec) {
+        Serializer serializer = serializers[codec & 0xFF];
+        if (serializer == null) {
+            throw new IllegalArgumentException("不支持的序列化类型: " + codec);
+        }
+        return serializer;
+    }
+}
@@ -2,8 +2,14 @@ package com.lightrpc.common.serializer.impl;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.lightrpc.common.enums.SerializerCodeEnum;
 import com.lightrpc.common.serializer.Serializer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
@@ -14,6 +20,11 @@ public class JsonSerializer implements Serializer {
             .setDateFormat("yyyy-MM-dd HH:mm:ss") // 设置时间格式
             .create();
 
+    @Override
+    public byte getCodec() {
+        return SerializerCodeEnum.JSON.getCode();
+    }
+
     @Override
     public byte[] serialize(Object object) {
         if (Objects.isNull(object)) {
@@ -31,4 +42,34 @@ public class JsonSerializer implements Serializer {
         String json = new String(bytes, StandardCharsets.UTF_8);
         return gson.fromJson(json, clazz);
     }
+
+    @Override
+    public void serialize(Object object, OutputStream out) throws IOException {
+        if (Objects.isNull(object)) {
+            return;
+        }
+        // 字符直接编码进输出流，不再经过中间的 String 和 byte[]
+        Utf8Writer writer = new Utf8Writer(out);
+        gson.toJson(object, writer);
+        writer.close();
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, int length, Class<T> clazz) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+        return gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), clazz);
+    }
+
+    /**
+     * JSON 不带类型信息，Object 里的数字都被解析成 Double，对象被解析成 Map，这里按声明的类型重新转换一次
+     */
+    @Override
+    public Object convert(Object value, Type type) {
+        if (value == null || (type instanceof Class && ((Class<?>) type).isInstance(value))) {
+            return value;
+        }
+        return gson.fromJson(gson.toJsonTree(value), type);
+    }
 }
@@ -0,0 +1,96 @@
+package com.lightrpc.common.serializer.impl;
+
+import com.lightrpc.common.enums.SerializerCodeEnum;
+import com.lightrpc.common.serializer.Serializer;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.DefaultIdStrategy;
+import io.protostuff.runtime.IdStrategy;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 基于 Protostuff 的二进制序列化 (Protobuf 编码格式)
+ * Schema 在第一次使用某个类时通过反射生成并缓存，之后不再有反射开销
+ * 不需要 .proto 文件，RpcRequest / RpcResponse 可以直接使用
+ */
+public class ProtostuffSerializer implements Serializer {
+
+    /**
+     * PRESERVE_NULL_ELEMENTS: 保留数组里的 null 元素
+     * 否则 parameters 中间有 null 参数时，后面的参数会整体前移
+     */
+    private static final IdStrategy ID_STRATEGY =
+            new DefaultIdStrategy(IdStrategy.DEFAULT_FLAGS | IdStrategy.PRESERVE_NULL_ELEMENTS);
+
+    /**
+     * 每个线程复用一块 LinkedBuffer，避免每次序列化都申请缓冲区
+     * 只给流式的编解码用：协议编解码都在 Netty 的 IO 线程上执行，线程数是固定的；
+     * byte[] 版本会在业务线程 (甚至虚拟线程) 上调用 (进程内调用的拷贝)，每个线程一块缓冲区会越积越多，所以每次新申请
+     */
+    private static final ThreadLocal<LinkedBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+
+    @Override
+    public byte getCodec() {
+        return SerializerCodeEnum.PROTOBUF.getCode();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object object) {
+        if (object == null) {
+            return new byte[0];
+        }
+        Schema<Object> schema = (Schema<Object>) RuntimeSchema.getSchema(object.getClass(), ID_STRATEGY);
+        return ProtostuffIOUtil.toByteArray(object, schema, LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> clazz) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        Schema<T> schema = RuntimeSchema.getSchema(clazz, ID_STRATEGY);
+        T message = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(bytes, message, schema);
+        return message;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(Object object, OutputStream out) throws IOException {
+        if (object == null) {
+            return;
+        }
+        Schema<Object> schema = (Schema<Object>) RuntimeSchema.getSchema(object.getClass(), ID_STRATEGY);
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 写满 LinkedBuffer 后分段刷到输出流，不会生成完整的 byte[]
+            ProtostuffIOUtil.writeTo(out, object, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, int length, Class<T> clazz) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+        Schema<T> schema = RuntimeSchema.getSchema(clazz, ID_STRATEGY);
+        T message = schema.newMessage();
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 输入流在消息体结束处返回 EOF，mergeFrom 读到 EOF 即结束
+            ProtostuffIOUtil.mergeFrom(in, message, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+        return message;
+    }
+}
@@ -0,0 +1,92 @@
+package com.lightrpc.common.serializer.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * 直接把字符按 UTF-8 编码写到 OutputStream 的 Writer
+ * 和 OutputStreamWriter 相比，不会为每次序列化分配 8KB 的编码缓冲区和 CharsetEncoder
+ * 非线程安全，每次序列化 new 一个即可 (对象本身只有两个字段)
+ */
+class Utf8Writer extends Writer {
+
+    private final OutputStream out;
+
+    /**
+     * 上一次写入的高位代理字符 (跨 write 调用的代理对)
+     */
+    private char highSurrogate;
+
+    Utf8Writer(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            writeChar(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            writeChar(str.charAt(i));
+        }
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+                return;
+            }
+            // 孤立的高位代理，和 String.getBytes 一样替换成 '?'
+            out.write('?');
+        }
+
+        if (c < 0x80) {
+            out.write(c);
+        } else if (c < 0x800) {
+            out.write(0xC0 | (c >> 6));
+            out.write(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            out.write('?');
+        } else {
+            out.write(0xE0 | (c >> 12));
+            out.write(0x80 | ((c >> 6) & 0x3F));
+            out.write(0x80 | (c & 0x3F));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 结束写入 (不会关闭底层的 OutputStream)
+     */
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            out.write('?');
+        }
+        flush();
+    }
+}
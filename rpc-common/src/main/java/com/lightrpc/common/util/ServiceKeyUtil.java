@@ -0,0 +1,28 @@
+package com.lightrpc.common.util;
+
+import com.lightrpc.common.constants.RpcConstants;
+
+/**
+ * 服务标识工具类
+ * 服务标识格式为 "接口全类名:版本" 或 "接口全类名:版本:分组"，
+ * 注册中心、服务端本地注册表和客户端负载均衡都以它为 Key，同一接口的不同版本/分组互不干扰
+ */
+public class ServiceKeyUtil {
+
+    private ServiceKeyUtil() {
+    }
+
+    /**
+     * @param interfaceName 接口全类名
+     * @param version       版本号，为空时使用默认版本
+     * @param group         分组，为空表示不分组
+     */
+    public static String build(String interfaceName, String version, String group) {
+        String key = interfaceName + ":" + (isEmpty(version) ? RpcConstants.DEFAULT_VERSION : version);
+        return isEmpty(group) ? key : key + ":" + group;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
@@ -12,6 +12,9 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD) // 作用在字段上
 @Retention(RetentionPolicy.RUNTIME)
 public @interface LightRpcClient {
-    // 版本号
+    // 版本号，只路由到版本相同的服务实例
     String version() default "1.0";
+
+    // 分组，只路由到分组相同的服务实例，默认不分组
+    String group() default "";
 }
@@ -0,0 +1,18 @@
+package com.lightrpc.core.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 服务方法注解 (可选)
+ * 作用：标注在服务实现类的方法上，定制单个方法的服务端执行方式
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LightRpcMethod {
+
+    // 是否直接在 IO 线程上执行 (跳过业务线程池)，只适合极快、不阻塞的方法
+    boolean ioThread() default false;
+}
@@ -19,6 +19,9 @@ public @interface LightRpcService {
     // 服务接口类（默认取实现的第一个接口，但指定一下更安全）
     Class<?> interfaceClass() default Void.class;
 
-    // 版本号（预留扩展）
+    // 版本号，客户端只会调用到版本相同的服务
     String version() default "1.0";
+
+    // 分组，同一接口同一版本可以按分组部署多套实现 (如灰度)，默认不分组
+    String group() default "";
 }
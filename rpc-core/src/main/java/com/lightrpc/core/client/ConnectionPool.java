@@ -0,0 +1,237 @@
+package com.lightrpc.core.client;
+
+import com.lightrpc.core.config.RpcClientConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单个服务端地址的连接池
+ * 1. 每次选择在途请求最少的连接发送
+ * 2. 所有连接都比较忙时，异步新建连接 (不超过 poolMaxSize)
+ * 3. 定期回收空闲连接 (不少于 poolMinSize) 和已断开的连接
+ */
+@Slf4j
+public class ConnectionPool {
+
+    /**
+     * 服务端地址：TCP (InetSocketAddress)、Unix Domain Socket 或 LocalChannel
+     */
+    private final SocketAddress address;
+    private final String name;
+    private final RpcClientConfig config;
+
+    /**
+     * 当前可用的连接，写时复制，读取 (选择连接) 时无锁
+     */
+    private volatile RpcClient[] clients = new RpcClient[0];
+
+    /**
+     * 已经从池中摘除、等待在途请求结束后关闭的连接
+     */
+    private final List<RpcClient> retiring = new ArrayList<>();
+
+    /**
+     * 同一时间只允许一个扩容中的连接
+     */
+    private final AtomicBoolean growing = new AtomicBoolean();
+
+    /**
+     * 正在同步建立的连接 (池里没有可用连接时)，同时到达的调用等同一个连接，不重复建立
+     */
+    private RpcClient connectingClient;
+    private ChannelFuture connecting;
+
+    public ConnectionPool(String host, int port, RpcClientConfig config) {
+        this(InetSocketAddress.createUnresolved(host, port), config);
+    }
+
+    public ConnectionPool(SocketAddress address, RpcClientConfig config) {
+        this.address = address;
+        this.name = RpcClient.describe(address);
+        this.config = config;
+    }
+
+    /**
+     * 选择在途请求最少的连接
+     */
+    public RpcClient acquire() {
+        return acquire(0);
+    }
+
+    /**
+     * 选择在途请求最少的连接
+     * @param timeoutMillis 调用的超时时间 (毫秒)，需要建立连接时最多等这么久，小于等于 0 表示只受 connectTimeoutMillis 限制
+     */
+    public RpcClient acquire(long timeoutMillis) {
+        RpcClient[] snapshot = clients;
+        RpcClient best = null;
+        int bestInFlight = Integer.MAX_VALUE;
+        for (RpcClient client : snapshot) {
+            if (!client.isActive()) {
+                continue;
+            }
+            int inFlight = client.getInFlight();
+            if (inFlight < bestInFlight) {
+                best = client;
+                bestInFlight = inFlight;
+            }
+        }
+
+        if (best == null) {
+            // 池是空的，或者连接全部断开了：同步建立一个连接
+            return connectSync(timeoutMillis);
+        }
+
+        // 最空闲的连接也积压了不少请求，说明负载上来了，异步扩容
+        if (bestInFlight >= config.getPoolGrowThreshold() && snapshot.length < config.getPoolMaxSize()) {
+            growAsync();
+        }
+        return best;
+    }
+
+    /**
+     * 建立连接并等待完成
+     * 只在发起连接时持有锁，等待时不持有：连接慢的时候不会挡住 shrink、扩容和其它地址无关的操作
+     */
+    private RpcClient connectSync(long timeoutMillis) {
+        int connectTimeout = config.getConnectTimeoutMillis();
+        if (timeoutMillis > 0 && timeoutMillis < connectTimeout) {
+            connectTimeout = (int) timeoutMillis;
+        }
+
+        RpcClient client;
+        ChannelFuture future;
+        synchronized (this) {
+            // 加锁后再检查一次，可能别的线程已经建好了
+            for (RpcClient active : clients) {
+                if (active.isActive()) {
+                    return active;
+                }
+            }
+            if (connecting == null) {
+                log.info("创建新的连接: {}", name);
+                RpcClient created = new RpcClient(address, config);
+                connectingClient = created;
+                connecting = created.connectAsync(connectTimeout);
+                client = created;
+                future = connecting;
+                // 连接完成 (成功或失败) 后放进池里，等待的调用方不需要再加锁；已经完成时监听器会立即执行
+                future.addListener((ChannelFutureListener) f -> {
+                    synchronized (ConnectionPool.this) {
+                        if (f.isSuccess()) {
+                            add(created);
+                        }
+                        if (connectingClient == created) {
+                            connectingClient = null;
+                            connecting = null;
+                        }
+                    }
+                });
+            } else {
+                client = connectingClient;
+                future = connecting;
+            }
+        }
+
+        try {
+            if (!future.await(connectTimeout)) {
+                throw new RuntimeException("连接服务端超时: " + name + ", 超时时间: " + connectTimeout + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("连接服务端被中断: " + name, e);
+        }
+        if (!future.isSuccess()) {
+            log.error("连接失败: {}", name, future.cause());
+            throw new RuntimeException("连接服务端失败: " + name, future.cause());
+        }
+        return client;
+    }
+
+    private void growAsync() {
+        if (!growing.compareAndSet(false, true)) {
+            return;
+        }
+        log.info("连接池扩容: {}, 当前连接数: {}", name, clients.length);
+        RpcClient client = new RpcClient(address, config);
+        client.connectAsync().addListener((ChannelFutureListener) future -> {
+            try {
+                if (future.isSuccess()) {
+                    add(client);
+                } else {
+                    log.warn("连接池扩容失败: {}", name, future.cause());
+                }
+            } finally {
+                growing.set(false);
+            }
+        });
+    }
+
+    private synchronized void add(RpcClient client) {
+        RpcClient[] copy = new RpcClient[clients.length + 1];
+        System.arraycopy(clients, 0, copy, 0, clients.length);
+        copy[clients.length] = client;
+        clients = copy;
+    }
+
+    /**
+     * 回收空闲连接和已断开的连接，由 RpcClientFactory 定期调用
+     */
+    public synchronized void shrink() {
+        List<RpcClient> active = new ArrayList<>();
+        for (RpcClient client : clients) {
+            if (client.isActive()) {
+                active.add(client);
+            } else {
+                log.info("移除已断开的连接: {}", client);
+                client.close();
+            }
+        }
+
+        // 最多回收到只剩 poolMinSize 个连接
+        long now = System.currentTimeMillis();
+        int removable = active.size() - config.getPoolMinSize();
+        List<RpcClient> kept = new ArrayList<>();
+        for (RpcClient client : active) {
+            boolean idle = client.getInFlight() == 0
+                    && now - client.getLastActiveTime() > config.getPoolIdleTimeoutMillis();
+            if (idle && removable > 0) {
+                log.info("回收空闲连接: {}", client);
+                retiring.add(client);
+                removable--;
+            } else {
+                kept.add(client);
+            }
+        }
+        clients = kept.toArray(new RpcClient[0]);
+
+        // 摘除前刚被选中的连接可能还有请求在途，等它们结束再关闭
+        retiring.removeIf(client -> {
+            if (client.getInFlight() == 0 || !client.isActive()) {
+                client.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public int size() {
+        return clients.length;
+    }
+
+    public synchronized void close() {
+        for (RpcClient client : clients) {
+            client.close();
+        }
+        retiring.forEach(RpcClient::close);
+        retiring.clear();
+        clients = new RpcClient[0];
+    }
+}
@@ -1,81 +1,290 @@
 package com.lightrpc.core.client;
 
 import com.lightrpc.common.model.RpcMessage;
+import com.lightrpc.common.model.RpcRequest;
 import com.lightrpc.common.model.RpcResponse;
+import com.lightrpc.core.client.UnprocessedRequests.PendingRequest;
+import com.lightrpc.core.codec.ChunkWriter;
 import com.lightrpc.core.codec.RpcMessageDecoder;
 import com.lightrpc.core.codec.RpcMessageEncoder;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.metrics.FlushMetricsHandler;
+import com.lightrpc.core.stream.StreamCall;
+import com.lightrpc.core.stream.StreamTable;
+import com.lightrpc.core.transport.Transport;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public class RpcClient {
 
-    private final String host;
-    private final int port;
-    private static final EventLoopGroup group = new NioEventLoopGroup();
+    /**
+     * 服务端地址：TCP (InetSocketAddress)、Unix Domain Socket (DomainSocketAddress) 或 LocalChannel (LocalAddress)
+     */
+    private final SocketAddress remoteAddress;
+    private final String name;
+    private final RpcClientConfig config;
+    // 所有客户端连接共享的 IO 线程组，第一次建立连接时按配置创建，shutdownEventLoopGroup 之后再用会重新创建
+    private static Transport transport;
+    private static EventLoopGroup group;
+    // 所有客户端连接共享的写出统计
+    private static final FlushMetricsHandler flushMetrics = new FlushMetricsHandler();
     private final UnprocessedRequests unprocessedRequests;
+    // 这个连接上进行中的数据流
+    private final StreamTable streams = new StreamTable();
 
     // 我们需要持有这个 channel，稍后用来发消息
-    private Channel channel;
+    private volatile Channel channel;
+
+    /**
+     * 这个连接上已发出、还没收到响应的请求数 (连接池按它选择最空闲的连接)
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
 
-    public RpcClient(String host, int port) {
-        this.host = host;
-        this.port = port;
-        this.unprocessedRequests = new UnprocessedRequests();
+    /**
+     * 最近一次发送请求的时间 (连接池按它回收空闲连接)
+     */
+    private volatile long lastActiveTime = System.currentTimeMillis();
+
+    public RpcClient(String host, int port, RpcClientConfig config) {
+        // 不在这里解析域名，连接时由 Bootstrap 解析
+        this(InetSocketAddress.createUnresolved(host, port), config);
     }
 
+    public RpcClient(SocketAddress remoteAddress, RpcClientConfig config) {
+        this.remoteAddress = remoteAddress;
+        this.name = describe(remoteAddress);
+        this.config = config;
+        this.unprocessedRequests = new UnprocessedRequests(config.getMaxInFlightPerConnection());
+    }
+
+    /**
+     * 同步建立连接，失败时抛出异常
+     */
     public void connect() {
         try {
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.group(group)
-                    .channel(NioSocketChannel.class)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            // Pipeline 必须和服务端保持一致（编解码器顺序）
-                            ch.pipeline().addLast(new RpcMessageEncoder());
-                            ch.pipeline().addLast(new RpcMessageDecoder());
-
-                            // 客户端检测写空闲
-                            // 如果 5 秒没有向服务端发送数据，触发 WRITER_IDLE 事件
-//                            ch.pipeline().addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
-
-                            ch.pipeline().addLast(new RpcClientHandler());
+            connectAsync().sync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("连接服务端被中断: " + name, e);
+        } catch (Exception e) {
+            log.error("连接失败", e);
+            throw new RuntimeException("连接服务端失败: " + name, e);
+        }
+    }
+
+    /**
+     * 异步建立连接 (连接池扩容时使用，不阻塞调用方)，超时时间为 connectTimeoutMillis
+     */
+    public ChannelFuture connectAsync() {
+        return connectAsync(config.getConnectTimeoutMillis());
+    }
+
+    /**
+     * 异步建立连接
+     * @param connectTimeoutMillis 建立连接的超时时间 (毫秒)，超时后返回的 Future 以失败结束
+     */
+    public ChannelFuture connectAsync(int connectTimeoutMillis) {
+        Bootstrap bootstrap = newBootstrap(config, remoteAddress)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis);
+        bootstrap.handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        // 写出统计放在最前面，统计的是合并之后真正的 flush 次数
+                        ch.pipeline().addLast(flushMetrics);
+                        if (config.isFlushConsolidation()) {
+                            // 业务线程发起的 writeAndFlush 会在 EventLoop 上合并成一次 flush
+                            ch.pipeline().addLast(new FlushConsolidationHandler(config.getFlushConsolidationLimit(), true));
                         }
-                    });
 
-            // 连接服务端
-            ChannelFuture future = bootstrap.connect(host, port).sync();
-            // 获取连接成功的 channel
-            this.channel = future.channel();
-            log.info("【客户端】已连接到服务端 {}:{}", host, port);
+                        // 大请求拆成分片，和其它请求交错写出
+                        if (config.getChunkSize() > 0) {
+                            ch.pipeline().addLast(new ChunkWriter(config.getChunkSize()));
+                        }
 
-            // 注意：这里不能像 Server 那样调用 closeFuture().sync() 阻塞
-            // 因为客户端连接成功后，主线程还要继续往下执行，发送数据！
+                        // Pipeline 必须和服务端保持一致（编解码器顺序）
+                        ch.pipeline().addLast(new RpcMessageEncoder(config.getCompressThreshold()));
+                        ch.pipeline().addLast(new RpcMessageDecoder(false, config.getMaxChunkedBytes()));
 
-        } catch (InterruptedException e) {
-            log.error("连接失败", e);
-        }
+                        // 客户端检测写空闲
+                        // 如果 5 秒没有向服务端发送数据，触发 WRITER_IDLE 事件
+//                        ch.pipeline().addLast(new IdleStateHandler(0, 5, 0, TimeUnit.SECONDS));
+
+                        ch.pipeline().addLast(new RpcClientHandler(unprocessedRequests, streams));
+                    }
+                });
+
+        // 连接服务端
+        ChannelFuture future = bootstrap.connect(remoteAddress);
+        // 持有 channel，连接建立之前 isActive() 为 false，连接池不会选中它
+        this.channel = future.channel();
+        future.addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                log.info("【客户端】已连接到服务端 {}", name);
+            }
+        });
+
+        // 注意：这里不能像 Server 那样调用 closeFuture().sync() 阻塞
+        // 因为客户端连接成功后，主线程还要继续往下执行，发送数据！
+        return future;
     }
 
     /**
      * 发送消息的方法
+     * 请求 ID 在这里按连接顺序分配，调用方不需要设置
+     * @param timeoutMillis 等待响应的超时时间 (毫秒)，小于等于 0 表示不超时
+     */
+    public CompletableFuture<RpcResponse> sendRequest(RpcMessage message, long timeoutMillis) {
+        return sendRequest(message, timeoutMillis, null);
+    }
+
+    /**
+     * 发送流式调用：请求发出之前登记结果流的接收端和参数流的发送端
+     * @param streamCall 流式调用的状态，普通调用为 null
      */
-    public CompletableFuture<RpcResponse> sendRequest(RpcMessage message) {
-        CompletableFuture<RpcResponse> resultFuture = new CompletableFuture<>();
-        unprocessedRequests.put(message.getRequestId(), resultFuture);
-        this.channel.writeAndFlush(message);
-        return resultFuture;
+    public CompletableFuture<RpcResponse> sendRequest(RpcMessage message, long timeoutMillis, StreamCall streamCall) {
+        PendingRequest pending = unprocessedRequests.put(timeoutMillis);
+        if (pending.isDone()) {
+            // 在途请求已满，没有放进请求表
+            return pending;
+        }
+        long requestId = pending.getId();
+        message.setRequestId(requestId);
+        if (message.getData() instanceof RpcRequest) {
+            ((RpcRequest) message.getData()).setRequestId(requestId);
+        }
+
+        inFlight.incrementAndGet();
+        lastActiveTime = System.currentTimeMillis();
+        pending.whenComplete((response, throwable) -> inFlight.decrementAndGet());
+        if (streamCall != null) {
+            streams.openCall(channel, message, streamCall, pending);
+        }
+
+        this.channel.writeAndFlush(message).addListener((ChannelFutureListener) f -> {
+            // 请求没发出去 (例如连接已断开)，不会再有响应，直接失败
+            if (!f.isSuccess() && unprocessedRequests.remove(requestId) != null) {
+                pending.completeExceptionally(f.cause());
+            }
+        });
+        return pending;
+    }
+
+    private static synchronized Bootstrap newBootstrap(RpcClientConfig config, SocketAddress remoteAddress) {
+        ensureEventLoopGroup(config);
+        Bootstrap bootstrap = new Bootstrap().group(group);
+        if (remoteAddress instanceof LocalAddress) {
+            // LocalChannel 可以跑在任意实现的 EventLoop 上
+            return bootstrap.channel(LocalChannel.class);
+        }
+        if (remoteAddress instanceof DomainSocketAddress) {
+            if (!transport.supportsDomainSocket()) {
+                throw new RuntimeException("当前传输实现不支持 Unix Domain Socket: " + transport);
+            }
+            return bootstrap.channel(transport.getDomainChannelClass());
+        }
+        return bootstrap.channel(transport.getChannelClass());
+    }
+
+    private static synchronized void ensureEventLoopGroup(RpcClientConfig config) {
+        if (group == null) {
+            transport = Transport.select(config.getTransport());
+            // 守护线程：客户端的 IO 线程不应该阻止 JVM 退出
+            group = transport.newEventLoopGroup(config.getIoThreads(), "rpc-client-io", true);
+            log.info("【客户端】IO 线程组已创建，传输实现: {}", transport);
+        }
+    }
+
+    /**
+     * 共享 IO 线程组的传输实现是否支持 Unix Domain Socket (线程组还没创建时按配置创建)
+     */
+    public static synchronized boolean supportsDomainSocket(RpcClientConfig config) {
+        ensureEventLoopGroup(config);
+        return transport.supportsDomainSocket();
+    }
+
+    /**
+     * 关闭共享的 IO 线程组，所有连接随之断开
+     * 调用方应先关闭连接池；之后再建立连接会重新创建线程组
+     */
+    public static void shutdownEventLoopGroup() {
+        EventLoopGroup closing;
+        synchronized (RpcClient.class) {
+            closing = group;
+            group = null;
+            transport = null;
+        }
+        if (closing != null) {
+            closing.shutdownGracefully(0, 2, TimeUnit.SECONDS).syncUninterruptibly();
+            log.info("【客户端】IO 线程组已关闭");
+        }
+    }
+
+    /**
+     * 客户端写出统计 (所有连接合计)
+     */
+    public static FlushMetricsHandler getFlushMetrics() {
+        return flushMetrics;
+    }
+
+    public boolean isActive() {
+        return channel != null && channel.isActive();
+    }
+
+    /**
+     * 在途请求数加上进行中的数据流个数
+     * 流式调用收到响应之后数据流还在传输，连接池不能把这个连接当成空闲的回收掉
+     */
+    public int getInFlight() {
+        return inFlight.get() + streams.size();
+    }
+
+    /**
+     * 最近一次发送请求或者收到流式消息的时间
+     */
+    public long getLastActiveTime() {
+        return Math.max(lastActiveTime, streams.getLastActiveTime());
+    }
+
+    public void close() {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * 地址的可读形式，也是连接池的 Key：TCP 为 host:port，Unix Domain Socket 为 unix:路径，LocalChannel 为 local:名称
+     */
+    public static String describe(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inetAddress = (InetSocketAddress) address;
+            return inetAddress.getHostString() + ":" + inetAddress.getPort();
+        }
+        if (address instanceof DomainSocketAddress) {
+            return "unix:" + ((DomainSocketAddress) address).path();
+        }
+        return String.valueOf(address);
+    }
+
+    @Override
+    public String toString() {
+        return name + (channel != null ? "@" + channel.localAddress() : "");
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,13 @@
 package com.lightrpc.core.client;
 
 import com.lightrpc.common.enums.MessageTypeEnum;
+import com.lightrpc.common.enums.ResponseCodeEnum;
 import com.lightrpc.common.enums.SerializerCodeEnum;
+import com.lightrpc.common.exception.RpcException;
 import com.lightrpc.common.model.RpcMessage;
 import com.lightrpc.common.model.RpcResponse;
+import com.lightrpc.core.codec.ChunkDiscardedEvent;
+import com.lightrpc.core.stream.StreamTable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
@@ -15,8 +19,15 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<RpcMessage> {
 
     private final UnprocessedRequests unprocessedRequests;
 
-    public RpcClientHandler() {
-        this.unprocessedRequests = new UnprocessedRequests();
+    private final StreamTable streams;
+
+    public RpcClientHandler(UnprocessedRequests unprocessedRequests) {
+        this(unprocessedRequests, new StreamTable());
+    }
+
+    public RpcClientHandler(UnprocessedRequests unprocessedRequests, StreamTable streams) {
+        this.unprocessedRequests = unprocessedRequests;
+        this.streams = streams;
     }
 
     @Override
@@ -24,13 +35,36 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<RpcMessage> {
         log.info("【客户端】收到服务端响应: {}", msg);
         if (msg.getMessageType() == MessageTypeEnum.RESPONSE.getType()) {
             RpcResponse response = (RpcResponse) msg.getData();
-            unprocessedRequests.complete(response);
+            unprocessedRequests.complete(msg.getRequestId(), response);
+        } else if (MessageTypeEnum.isStream(msg.getMessageType())) {
+            streams.onFrame(msg);
         }
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // 连接断开后不会再有响应，在途请求立即失败，不用等到超时
+        RpcException cause = new RpcException(ResponseCodeEnum.FAIL, "连接已断开: " + ctx.channel().remoteAddress());
+        unprocessedRequests.failAll(cause);
+        streams.closeAll(cause);
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-        if (evt instanceof IdleStateEvent) {
+        if (evt instanceof ChunkDiscardedEvent) {
+            // 响应或者结果流的元素太大没有收下，对应的调用失败
+            ChunkDiscardedEvent event = (ChunkDiscardedEvent) evt;
+            if (event.getMessageType() == MessageTypeEnum.RESPONSE.getType()) {
+                RpcResponse response = new RpcResponse();
+                response.setRequestId(event.getRequestId());
+                response.setCode(ResponseCodeEnum.FAIL.getCode());
+                response.setMessage(event.getReason());
+                unprocessedRequests.complete(event.getRequestId(), response);
+            } else {
+                streams.abort(event.getRequestId(), new RpcException(ResponseCodeEnum.FAIL, event.getReason()));
+            }
+        } else if (evt instanceof IdleStateEvent) {
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.WRITER_IDLE) {
                 log.info("【客户端】5秒未发送数据，发送心跳包 Ping...");
@@ -0,0 +1,27 @@
+package com.lightrpc.core.client;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端共享的时间轮 (调用超时、对冲请求等)
+ * 每个定时任务只是往格子里挂一个节点，不会为每次调用创建定时任务
+ * 精度 10ms 对 RPC 超时足够；任务在时间轮线程上执行，不能阻塞
+ */
+public class RpcTimer {
+
+    private static final Timer TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("rpc-timeout-timer", true), 10, TimeUnit.MILLISECONDS, 512);
+
+    private RpcTimer() {
+    }
+
+    public static Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        return TIMER.newTimeout(task, delay, unit);
+    }
+}
@@ -1,37 +1,172 @@
 package com.lightrpc.core.client;
 
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import com.lightrpc.common.exception.RpcException;
 import com.lightrpc.common.model.RpcResponse;
+import io.netty.util.Timeout;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * 单个连接上等待响应的请求表
+ * 每个连接一份，请求 ID 在连接内顺序递增，直接用 ID 的低位作为槽位下标，
+ * 放入、匹配、移除都只是一次 CAS，不需要装箱和哈希
+ * 槽位被还没结束的老请求 (例如不超时、响应一直没回来的请求) 占着时跳过这个 ID 换下一个，
+ * 只有在途请求数真正达到容量时才拒绝
+ */
 @Slf4j
 public class UnprocessedRequests {
 
-    private static final ConcurrentHashMap<Long, CompletableFuture<RpcResponse>> unprocessedRequests = new ConcurrentHashMap<>();
+    /**
+     * 请求 ID 生成器，0 留给心跳包
+     */
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    private final AtomicReferenceArray<PendingRequest> slots;
+
+    private final int mask;
+
+    /**
+     * 在途请求数 (占用的槽位数)
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param capacity 最大在途请求数，会向上取整到 2 的幂
+     */
+    public UnprocessedRequests(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 分配请求 ID 并放入请求表
+     * 在途请求数已经达到容量时，返回的 Future 直接失败
+     * @param timeoutMillis 超时时间 (毫秒)，小于等于 0 表示不超时
+     */
+    public PendingRequest put(long timeoutMillis) {
+        PendingRequest pending = new PendingRequest(this);
+        // 先占一个名额，保证表里一定还有空槽位，下面的循环最终能放进去
+        if (inFlight.incrementAndGet() > slots.length()) {
+            inFlight.decrementAndGet();
+            pending.completeExceptionally(new RpcException(ResponseCodeEnum.SERVER_BUSY,
+                    "连接在途请求数超过上限: " + slots.length()));
+            return pending;
+        }
+        int index;
+        do {
+            // 槽位被老请求占着就跳过这个 ID
+            pending.id = idGenerator.incrementAndGet();
+            index = (int) pending.id & mask;
+        } while (!slots.compareAndSet(index, null, pending));
+        int slot = index;
+
+        if (timeoutMillis > 0) {
+            // 时间到了还在表里说明响应没回来，移除并让调用方失败
+            // 响应先到的话 CAS 会失败，这里什么都不做
+            pending.timeout = RpcTimer.newTimeout(t -> {
+                if (slots.compareAndSet(slot, pending, null)) {
+                    inFlight.decrementAndGet();
+                    pending.completeExceptionally(new RpcException(ResponseCodeEnum.TIMEOUT,
+                            "RPC调用超时: " + timeoutMillis + "ms, requestId: " + pending.id));
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return pending;
+    }
 
     /**
-     * 放入未处理的请求
+     * 移除未处理的请求 (例如请求没有发送出去)
      * @param requestId 请求ID
-     * @param future    用于存放结果的 Future
+     * @return 被移除的请求，不存在时返回 null
      */
-    public void put(Long requestId, CompletableFuture<RpcResponse> future) {
-        unprocessedRequests.put(requestId, future);
+    public PendingRequest remove(long requestId) {
+        int index = (int) requestId & mask;
+        PendingRequest pending = slots.get(index);
+        // 槽位可能已经被后面的请求复用，要核对 ID
+        if (pending == null || pending.id != requestId || !slots.compareAndSet(index, pending, null)) {
+            return null;
+        }
+        inFlight.decrementAndGet();
+        pending.cancelTimeout();
+        return pending;
     }
 
     /**
      * 完成请求
-     * @param response 服务端返回的响应
+     * @param requestId 协议头里的请求ID
+     * @param response  服务端返回的响应
      */
-    public void complete(RpcResponse response) {
-        CompletableFuture<RpcResponse> future = unprocessedRequests.remove(response.getRequestId());
+    public void complete(long requestId, RpcResponse response) {
+        PendingRequest pending = remove(requestId);
 
-        if (future != null) {
-            future.complete(response);
+        if (pending != null) {
+            pending.complete(response);
         } else {
             // 这种情况可能是：服务端处理太慢，客户端已经超时并删除了 future，结果服务端才返回
-            log.info("收到响应但未找到匹配的 Future: {}", response.getRequestId());
+            log.debug("收到响应但未找到匹配的 Future: {}", requestId);
+        }
+    }
+
+    /**
+     * 连接断开时让所有在途请求失败，不用等到超时
+     */
+    public void failAll(Throwable cause) {
+        for (int i = 0; i < slots.length(); i++) {
+            PendingRequest pending = slots.get(i);
+            if (pending != null && slots.compareAndSet(i, pending, null)) {
+                inFlight.decrementAndGet();
+                pending.cancelTimeout();
+                pending.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * 等待响应的请求：本身就是结果 Future，顺带记录请求 ID 和它在时间轮上的超时节点
+     */
+    public static class PendingRequest extends CompletableFuture<RpcResponse> {
+
+        private final UnprocessedRequests owner;
+
+        /**
+         * 放进请求表时确定，之后不再变化
+         */
+        private volatile long id;
+
+        private volatile Timeout timeout;
+
+        PendingRequest(UnprocessedRequests owner) {
+            this.owner = owner;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * 调用方不再需要结果 (例如对冲请求的另一路已经返回)，让出槽位，之后到达的响应直接丢弃
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            owner.remove(id);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * 提前取消超时节点，时间轮里不再保留已完成的请求
+         */
+        void cancelTimeout() {
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
         }
     }
-}
\ No newline at end of file
+}
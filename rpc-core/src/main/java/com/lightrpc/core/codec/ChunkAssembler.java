@@ -0,0 +1,100 @@
+package com.lightrpc.core.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分片拼接 (每个连接一个，只在 IO 线程上使用)
+ * 分片按请求 ID 收集，不拷贝，直接组合成 CompositeByteBuf；收齐后交给解码器按原消息类型反序列化
+ * 所有还没收齐的分片合计不能超过 maxBytes，超过时丢弃正在收的这条消息，
+ * 并通过 ChunkDiscardedEvent 通知业务处理器，连接本身和其它消息不受影响
+ */
+@Slf4j
+class ChunkAssembler {
+
+    private final int maxBytes;
+
+    private final Map<Long, CompositeByteBuf> assembling = new HashMap<>();
+
+    /**
+     * 已经丢弃、剩余分片还在路上的消息
+     */
+    private final Set<Long> discarding = new HashSet<>();
+
+    private long totalBytes;
+
+    ChunkAssembler(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 收到一个分片
+     * @param chunk 分片数据，所有权转交给这里
+     * @return 收齐后的完整消息体 (调用方负责释放)；还没收齐或者已经丢弃时返回 null
+     */
+    ByteBuf append(ChannelHandlerContext ctx, long requestId, byte messageType, byte codec, byte compress,
+                   ByteBuf chunk, boolean last) {
+        if (discarding.contains(requestId)) {
+            chunk.release();
+            if (last) {
+                discarding.remove(requestId);
+            }
+            return null;
+        }
+
+        CompositeByteBuf body = assembling.get(requestId);
+        if (body == null) {
+            body = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+            assembling.put(requestId, body);
+        }
+        int size = chunk.readableBytes();
+        body.addComponent(true, chunk);
+        totalBytes += size;
+
+        if (totalBytes > maxBytes) {
+            log.error("分片拼接超过内存上限 {} 字节，丢弃消息, requestId: {}, 已收到: {} 字节",
+                    maxBytes, requestId, body.readableBytes());
+            release(requestId);
+            if (!last) {
+                discarding.add(requestId);
+            }
+            ctx.fireUserEventTriggered(new ChunkDiscardedEvent(requestId, messageType, codec, compress,
+                    "消息超过分片拼接内存上限: " + maxBytes + " 字节"));
+            return null;
+        }
+
+        if (!last) {
+            return null;
+        }
+        assembling.remove(requestId);
+        totalBytes -= body.readableBytes();
+        return body;
+    }
+
+    private void release(long requestId) {
+        CompositeByteBuf body = assembling.remove(requestId);
+        if (body != null) {
+            totalBytes -= body.readableBytes();
+            body.release();
+        }
+    }
+
+    /**
+     * 连接关闭，释放还没收齐的分片
+     */
+    void releaseAll() {
+        for (CompositeByteBuf body : assembling.values()) {
+            body.release();
+        }
+        assembling.clear();
+        discarding.clear();
+        totalBytes = 0;
+    }
+}
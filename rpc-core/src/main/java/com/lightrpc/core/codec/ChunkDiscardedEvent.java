@@ -0,0 +1,35 @@
+package com.lightrpc.core.codec;
+
+import lombok.Getter;
+
+/**
+ * 分片消息超过连接的拼接内存上限被丢弃
+ * 解码器通过 userEventTriggered 通知业务处理器，由它让对应的调用失败，连接上的其它调用不受影响
+ */
+@Getter
+public class ChunkDiscardedEvent {
+
+    private final long requestId;
+
+    /**
+     * 原消息类型
+     */
+    private final byte messageType;
+
+    private final byte codec;
+
+    /**
+     * 对端可以接受的压缩算法
+     */
+    private final byte compress;
+
+    private final String reason;
+
+    ChunkDiscardedEvent(long requestId, byte messageType, byte codec, byte compress, String reason) {
+        this.requestId = requestId;
+        this.messageType = messageType;
+        this.codec = codec;
+        this.compress = compress;
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,216 @@
+package com.lightrpc.core.codec;
+
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.enums.MessageTypeEnum;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 大消息分片发送 (放在 RpcMessageEncoder 和网络之间，每个连接一个)
+ * 编码后消息体超过 chunkSize 的消息拆成多个 CHUNK 帧，每帧不超过单帧上限，接收方由 RpcMessageDecoder 拼接
+ * 分片不是一次性写完：Channel 可写时才写下一片，多条大消息轮流写，期间的小消息直接写出，
+ * 一条大消息不会把同一连接上的其它调用堵在后面
+ * 同一个请求 ID 的消息保持顺序：前面还有分片没写完时，后面的消息 (不论大小) 都排在它后面
+ */
+public class ChunkWriter extends ChannelDuplexHandler {
+
+    /**
+     * 协议头里请求 ID 的偏移量：魔数4 + 版本1 + 序列化1 + 压缩1 + 类型1
+     */
+    private static final int REQUEST_ID_OFFSET = 8;
+
+    /**
+     * 协议头里消息类型的偏移量：魔数4 + 版本1 + 序列化1 + 压缩1
+     */
+    private static final int MESSAGE_TYPE_OFFSET = 7;
+
+    private final int chunkSize;
+
+    /**
+     * 还有分片没写完的消息，按请求 ID 分组，组内按写入顺序发送
+     */
+    private final Map<Long, Deque<PendingFrame>> pending = new HashMap<>();
+
+    /**
+     * 轮流写分片的请求 ID
+     */
+    private final Deque<Long> order = new ArrayDeque<>();
+
+    /**
+     * @param chunkSize 分片大小 (字节)，会被限制在单帧上限以内
+     */
+    public ChunkWriter(int chunkSize) {
+        this.chunkSize = Math.min(Math.max(chunkSize, 1),
+                RpcConstants.MAX_FRAME_LENGTH - RpcConstants.HEADER_LENGTH - RpcConstants.CHUNK_HEADER_LENGTH);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        ByteBuf frame = (ByteBuf) msg;
+        long requestId = frame.getLong(frame.readerIndex() + REQUEST_ID_OFFSET);
+        boolean large = frame.readableBytes() - RpcConstants.HEADER_LENGTH > chunkSize;
+        Deque<PendingFrame> queue = pending.get(requestId);
+        if (queue == null && !large) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            pending.put(requestId, queue);
+            order.add(requestId);
+        }
+        queue.add(new PendingFrame(frame, promise, large));
+        writePending(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            writePending(ctx);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discardAll();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        discardAll();
+    }
+
+    /**
+     * Channel 可写时按请求 ID 轮流写一片，直到不可写 (出站缓冲超过高水位) 或者全部写完
+     */
+    private void writePending(ChannelHandlerContext ctx) {
+        boolean written = false;
+        while (!order.isEmpty() && ctx.channel().isWritable()) {
+            Long requestId = order.poll();
+            Deque<PendingFrame> queue = pending.get(requestId);
+            PendingFrame frame = queue.peek();
+
+            ByteBuf next = frame.next(ctx);
+            boolean done = frame.isDone();
+            ChannelPromise promise = frame.promise;
+            ctx.write(next).addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    promise.tryFailure(f.cause());
+                } else if (done) {
+                    promise.trySuccess();
+                }
+            });
+            written = true;
+
+            if (done) {
+                queue.poll();
+            }
+            if (queue.isEmpty()) {
+                pending.remove(requestId);
+            } else {
+                order.add(requestId);
+            }
+        }
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+    private void discardAll() {
+        ClosedChannelException cause = new ClosedChannelException();
+        for (Deque<PendingFrame> queue : pending.values()) {
+            for (PendingFrame frame : queue) {
+                frame.discard(cause);
+            }
+        }
+        pending.clear();
+        order.clear();
+    }
+
+    /**
+     * 等待写出的一帧，大消息按分片逐段写出，其它消息整帧写出
+     */
+    private class PendingFrame {
+
+        private final ByteBuf frame;
+
+        private final ChannelPromise promise;
+
+        private final boolean chunked;
+
+        /**
+         * 原协议头的位置
+         */
+        private final int headerIndex;
+
+        private boolean done;
+
+        PendingFrame(ByteBuf frame, ChannelPromise promise, boolean chunked) {
+            this.frame = frame;
+            this.promise = promise;
+            this.chunked = chunked;
+            this.headerIndex = frame.readerIndex();
+            if (chunked) {
+                // 跳过原协议头，之后的 readerIndex 就是下一片的起点
+                frame.skipBytes(RpcConstants.HEADER_LENGTH);
+            }
+        }
+
+        /**
+         * 下一段要写出的数据，所有权交给调用方
+         */
+        ByteBuf next(ChannelHandlerContext ctx) {
+            if (!chunked) {
+                done = true;
+                return frame;
+            }
+            int length = Math.min(chunkSize, frame.readableBytes());
+            boolean last = length == frame.readableBytes();
+
+            // 分片头：复制原协议头，改消息类型和长度，后面跟原消息类型和结束标记
+            ByteBuf header = ctx.alloc().buffer(RpcConstants.HEADER_LENGTH + RpcConstants.CHUNK_HEADER_LENGTH);
+            header.writeBytes(frame, headerIndex, RpcConstants.HEADER_LENGTH);
+            byte messageType = header.getByte(MESSAGE_TYPE_OFFSET);
+            header.setByte(MESSAGE_TYPE_OFFSET, MessageTypeEnum.CHUNK.getType());
+            header.setInt(RpcConstants.LENGTH_FIELD_OFFSET, length + RpcConstants.CHUNK_HEADER_LENGTH);
+            header.writeByte(messageType);
+            header.writeBoolean(last);
+
+            CompositeByteBuf chunk = ctx.alloc().compositeBuffer(2);
+            chunk.addComponents(true, header, frame.readRetainedSlice(length));
+            if (last) {
+                done = true;
+                frame.release();
+            }
+            return chunk;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        void discard(Throwable cause) {
+            if (!done) {
+                done = true;
+                frame.release();
+            }
+            promise.tryFailure(cause);
+        }
+    }
+}
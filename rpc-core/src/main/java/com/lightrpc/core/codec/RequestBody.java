@@ -0,0 +1,53 @@
+package com.lightrpc.core.codec;
+
+import com.lightrpc.common.model.RpcRequest;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 还没有反序列化的请求体
+ * 服务端解码器只解析协议头，请求体原样交给业务处理器，等限流检查通过后再反序列化，
+ * 被拒绝的请求不会浪费 CPU 在解压和反序列化参数上
+ * 必须在 IO 线程上 decode：解压和反序列化复用的 Inflater / LinkedBuffer 是按线程缓存的，
+ * 放到业务线程 (虚拟线程) 上会每个请求新建一份
+ * 持有一份引用计数，decode 或 release 之后不能再使用
+ */
+public class RequestBody {
+
+    private final ByteBuf body;
+
+    private final byte codec;
+
+    /**
+     * 消息体实际使用的压缩算法
+     */
+    private final byte compress;
+
+    RequestBody(ByteBuf body, byte codec, byte compress) {
+        this.body = body;
+        this.codec = codec;
+        this.compress = compress;
+    }
+
+    /**
+     * 反序列化请求并释放缓冲区
+     */
+    public RpcRequest decode() throws Exception {
+        try {
+            return RpcMessageDecoder.decodeBody(body, body.readableBytes(), codec, compress, RpcRequest.class);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * 不再需要请求体 (请求被拒绝)，释放缓冲区
+     */
+    public void release() {
+        body.release();
+    }
+
+    @Override
+    public String toString() {
+        return "RequestBody(length=" + body.readableBytes() + ")";
+    }
+}
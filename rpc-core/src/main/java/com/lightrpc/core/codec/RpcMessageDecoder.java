@@ -1,24 +1,57 @@
 package com.lightrpc.core.codec;
 
+import com.lightrpc.common.compress.CompressorFactory;
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.enums.CompressTypeEnum;
 import com.lightrpc.common.enums.MessageTypeEnum;
 import com.lightrpc.common.model.RpcMessage;
 import com.lightrpc.common.model.RpcRequest;
 import com.lightrpc.common.model.RpcResponse;
-import com.lightrpc.common.enums.SerializerCodeEnum;
-import com.lightrpc.common.serializer.impl.JsonSerializer;
+import com.lightrpc.common.model.StreamFrame;
+import com.lightrpc.common.serializer.Serializer;
+import com.lightrpc.common.serializer.SerializerFactory;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 
+import java.io.InputStream;
+
 public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
 
+    /**
+     * 是否延迟反序列化请求体 (服务端使用，见 RequestBody)
+     */
+    private final boolean lazyRequestBody;
+
+    /**
+     * 大消息的分片拼接
+     */
+    private final ChunkAssembler chunkAssembler;
+
     public RpcMessageDecoder() {
+        this(false);
+    }
+
+    /**
+     * @param lazyRequestBody 为 true 时请求消息的 data 是未反序列化的 RequestBody，由业务处理器决定何时反序列化
+     */
+    public RpcMessageDecoder(boolean lazyRequestBody) {
+        this(lazyRequestBody, RpcConstants.DEFAULT_MAX_CHUNKED_BYTES);
+    }
+
+    /**
+     * @param maxChunkedBytes 这个连接上还没收齐的分片最多占用的内存 (字节)
+     */
+    public RpcMessageDecoder(boolean lazyRequestBody, int maxChunkedBytes) {
         // maxFrameLength: 8MB
-        // lengthFieldOffset: 15 (魔数4+版本1+序列化1+类型1+请求ID8)
+        // lengthFieldOffset: 16 (魔数4+版本1+序列化1+压缩1+类型1+请求ID8)
         // lengthFieldLength: 4
         // lengthAdjustment: 0 (长度字段只包含消息体长度，不需要修正)
         // initialBytesToStrip: 0 (我们需要读取 Header 信息，所以不跳过任何字节)
-        super(8 * 1024 * 1024, 15, 4, 0, 0);
+        super(RpcConstants.MAX_FRAME_LENGTH, RpcConstants.LENGTH_FIELD_OFFSET, 4, 0, 0);
+        this.lazyRequestBody = lazyRequestBody;
+        this.chunkAssembler = new ChunkAssembler(maxChunkedBytes);
     }
 
     @Override
@@ -30,46 +63,117 @@ public class RpcMessageDecoder extends LengthFieldBasedFrameDecoder {
             return null;
         }
 
+        try {
+            return decodeFrame(ctx, frame);
+        } finally {
+            // super.decode 返回的是 retainedSlice，用完必须释放，否则会内存泄漏
+            frame.release();
+        }
+    }
+
+    private RpcMessage decodeFrame(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
         // 2. 开始解析
         RpcMessage rpcMessage = new RpcMessage();
 
         // 逐个读取 Header (必须和 Encoder 的写入顺序完全一致)
         int magic = frame.readInt(); // 魔数
-        if (magic != 0xCAFEBABE) {
+        if (magic != RpcConstants.MAGIC_NUMBER) {
             throw new IllegalArgumentException("魔数非法: " + magic);
         }
 
         byte version = frame.readByte(); // 版本
+        if (version != RpcConstants.VERSION) {
+            throw new IllegalArgumentException("协议版本不兼容: " + version);
+        }
         byte codec = frame.readByte(); // 序列化算法
+        byte compress = frame.readByte(); // 压缩算法 (高 4 位: 对端接受的算法, 低 4 位: 本消息体使用的算法)
         byte messageType = frame.readByte(); // 消息类型
         long requestId = frame.readLong(); // 请求ID
         int length = frame.readInt(); // 数据长度
 
         // 填充到对象中
         rpcMessage.setCodec(codec);
+        rpcMessage.setCompress((byte) ((compress >> 4) & 0x0F));
         rpcMessage.setMessageType(messageType);
         rpcMessage.setRequestId(requestId);
 
+        // 大消息的分片：收齐之前不产生消息，收齐后按原消息类型解析拼好的消息体
+        if (messageType == MessageTypeEnum.CHUNK.getType()) {
+            // 先检查长度再读分片头，长度字段不对时给出明确的错误，而不是读越界或者得到负的切片长度
+            if (length < RpcConstants.CHUNK_HEADER_LENGTH || length > frame.readableBytes()) {
+                throw new IllegalArgumentException("分片长度不合法: " + length + ", 分片头长度: "
+                        + RpcConstants.CHUNK_HEADER_LENGTH + ", 可读字节数: " + frame.readableBytes());
+            }
+            byte originalType = frame.readByte();
+            boolean last = frame.readBoolean();
+            ByteBuf body = chunkAssembler.append(ctx, requestId, originalType, codec, rpcMessage.getCompress(),
+                    frame.readRetainedSlice(length - RpcConstants.CHUNK_HEADER_LENGTH), last);
+            if (body == null) {
+                return null;
+            }
+            rpcMessage.setMessageType(originalType);
+            try {
+                decodeData(rpcMessage, body, body.readableBytes(), compress);
+            } finally {
+                body.release();
+            }
+            return rpcMessage;
+        }
+
         // 3. 读取 Body
         if (length > 0) {
-            byte[] bodyBytes = new byte[length];
-            frame.readBytes(bodyBytes);
-
-            // 4. 反序列化
-            if (codec == SerializerCodeEnum.JSON.getCode()) {
-                JsonSerializer serializer = new JsonSerializer();
-
-                // 关键点：根据消息类型，决定反序列化成 Request 还是 Response
-                if (messageType == MessageTypeEnum.REQUEST.getType()) {
-                    RpcRequest request = serializer.deserialize(bodyBytes, RpcRequest.class);
-                    rpcMessage.setData(request);
-                } else if (messageType == MessageTypeEnum.RESPONSE.getType()) {
-                    RpcResponse response = serializer.deserialize(bodyBytes, RpcResponse.class);
-                    rpcMessage.setData(response);
-                }
-            }
+            decodeData(rpcMessage, frame, length, compress);
         }
 
         return rpcMessage;
     }
-}
\ No newline at end of file
+
+    /**
+     * 按消息类型解析消息体
+     * @param compress 协议头里的压缩字段
+     */
+    private void decodeData(RpcMessage rpcMessage, ByteBuf body, int length, byte compress) throws Exception {
+        byte codec = rpcMessage.getCodec();
+        byte messageType = rpcMessage.getMessageType();
+        byte applied = (byte) (compress & 0x0F);
+
+        // 关键点：根据消息类型，决定反序列化成 Request 还是 Response
+        if (messageType == MessageTypeEnum.REQUEST.getType()) {
+            if (lazyRequestBody) {
+                // 帧在 decode 结束时释放，这里另外持有一份引用
+                rpcMessage.setData(new RequestBody(body.readRetainedSlice(length), codec, applied));
+            } else {
+                rpcMessage.setData(decodeBody(body, length, codec, applied, RpcRequest.class));
+            }
+        } else if (messageType == MessageTypeEnum.RESPONSE.getType()) {
+            rpcMessage.setData(decodeBody(body, length, codec, applied, RpcResponse.class));
+        } else if (MessageTypeEnum.isStream(messageType)) {
+            rpcMessage.setData(decodeBody(body, length, codec, applied, StreamFrame.class));
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        // 连接关闭时释放还没收齐的分片
+        chunkAssembler.releaseAll();
+        super.handlerRemoved0(ctx);
+    }
+
+    /**
+     * 反序列化消息体
+     * @param applied 消息体实际使用的压缩算法
+     */
+    static <T> T decodeBody(ByteBuf body, int length, byte codec, byte applied, Class<T> clazz) throws Exception {
+        // 直接从帧 (堆外内存) 里流式反序列化，不再拷贝成 byte[] 和 String
+        InputStream in = new ByteBufInputStream(body, length);
+
+        // 消息体被压缩过，边解压边反序列化
+        if (applied != CompressTypeEnum.NONE.getCode()) {
+            in = CompressorFactory.getCompressor(applied).decompress(in);
+        }
+
+        // 4. 反序列化 (按协议头的 codec 取对应的序列化器)
+        Serializer serializer = SerializerFactory.getSerializer(codec);
+        return serializer.deserialize(in, length, clazz);
+    }
+}
@@ -1,44 +1,104 @@
 package com.lightrpc.core.codec;
 
+import com.lightrpc.common.compress.Compressor;
+import com.lightrpc.common.compress.CompressorFactory;
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.enums.CompressTypeEnum;
 import com.lightrpc.common.model.RpcMessage;
-import com.lightrpc.common.enums.SerializerCodeEnum;
-import com.lightrpc.common.serializer.impl.JsonSerializer;
+import com.lightrpc.common.serializer.SerializerFactory;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
+import java.io.OutputStream;
 import java.util.Objects;
 
 public class RpcMessageEncoder extends MessageToByteEncoder<RpcMessage> {
 
-    @Override
-    protected void encode(ChannelHandlerContext channelHandlerContext, RpcMessage rpcMessage, ByteBuf byteBuf) throws Exception {
+    /**
+     * 压缩阈值：消息体达到这个大小才压缩
+     */
+    private final int compressThreshold;
 
-        byte[] bodyBytes = null;
+    public RpcMessageEncoder() {
+        this(RpcConstants.DEFAULT_COMPRESS_THRESHOLD);
+    }
 
-        if (Objects.equals(SerializerCodeEnum.JSON.getCode(), rpcMessage.getCodec())) {
-            JsonSerializer  jsonSerializer = new JsonSerializer();
-            bodyBytes = jsonSerializer.serialize(rpcMessage.getData());
-        }
+    public RpcMessageEncoder(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
 
-        // 防止空指针, 如果序列化失败或 data 为空，写入空数组
-        if (bodyBytes == null) {
-            bodyBytes = new byte[0];
-        }
+    @Override
+    protected void encode(ChannelHandlerContext channelHandlerContext, RpcMessage rpcMessage, ByteBuf byteBuf) throws Exception {
 
         // 魔数 (4字节) - 用于校验协议是否合法
-        byteBuf.writeInt(0xCAFEBABE)
+        byteBuf.writeInt(RpcConstants.MAGIC_NUMBER)
                 // 版本号(1字节)
-                .writeByte(1)
+                .writeByte(RpcConstants.VERSION)
                 // 序列化算法(1字节)
-                .writeByte(rpcMessage.getCodec())
+                .writeByte(rpcMessage.getCodec());
+
+        // 压缩算法(1字节) - 高 4 位: 本端能接受的压缩算法 (对端据此压缩回包), 低 4 位: 本消息体实际使用的压缩算法
+        // 消息体写完才知道要不要压缩，先占位，写完再回填
+        int compressIndex = byteBuf.writerIndex();
+        byteBuf.writeByte(0)
                 // 消息类型(1字节)
                 .writeByte(rpcMessage.getMessageType())
                 // 请求ID (8字节)
-                .writeLong(rpcMessage.getRequestId())
-                // 数据长度(4字节) - 告诉解码器后面要读多少数据
-                .writeInt(bodyBytes.length)
-                // 写入实际数据
-                .writeBytes(bodyBytes);
+                .writeLong(rpcMessage.getRequestId());
+
+        // 数据长度(4字节) - 告诉解码器后面要读多少数据
+        // 序列化之前还不知道长度，先占位，写完消息体再回填
+        int lengthIndex = byteBuf.writerIndex();
+        byteBuf.writeInt(0);
+        int bodyIndex = byteBuf.writerIndex();
+
+        // 写入实际数据: 直接序列化进 byteBuf (默认是池化的堆外内存)，不经过中间的 byte[]
+        // 心跳包没有消息体，不需要序列化
+        if (Objects.nonNull(rpcMessage.getData())) {
+            SerializerFactory.getSerializer(rpcMessage.getCodec())
+                    .serialize(rpcMessage.getData(), new ByteBufOutputStream(byteBuf));
+        }
+
+        byte compress = (byte) (rpcMessage.getCompress() & 0x0F);
+        if (compress != CompressTypeEnum.NONE.getCode() && !CompressorFactory.isSupported(compress)) {
+            // 对端要求的算法本端没有 (例如服务端照搬客户端声明的算法)：不压缩，也不声明可以接受它
+            compress = CompressTypeEnum.NONE.getCode();
+        }
+        byte applied = CompressTypeEnum.NONE.getCode();
+        int bodyLength = byteBuf.writerIndex() - bodyIndex;
+        if (compress != CompressTypeEnum.NONE.getCode() && bodyLength >= compressThreshold) {
+            if (compress(channelHandlerContext, compress, byteBuf, bodyIndex, bodyLength)) {
+                applied = compress;
+            }
+        }
+
+        // 回填压缩字段和数据长度
+        byteBuf.setByte(compressIndex, (compress << 4) | applied);
+        byteBuf.setInt(lengthIndex, byteBuf.writerIndex() - bodyIndex);
+    }
+
+    /**
+     * 把 byteBuf 中已经序列化好的消息体压缩后原地替换
+     * @return 压缩后变小了才替换，返回 true；否则保持原样，返回 false
+     */
+    private boolean compress(ChannelHandlerContext ctx, byte compress, ByteBuf byteBuf, int bodyIndex, int bodyLength) throws Exception {
+        Compressor compressor = CompressorFactory.getCompressor(compress);
+        ByteBuf compressed = ctx.alloc().buffer(bodyLength / 2);
+        try {
+            OutputStream out = compressor.compress(new ByteBufOutputStream(compressed));
+            byteBuf.getBytes(bodyIndex, out, bodyLength);
+            out.close();
+
+            if (compressed.readableBytes() >= bodyLength) {
+                return false;
+            }
+            byteBuf.writerIndex(bodyIndex);
+            byteBuf.writeBytes(compressed);
+            return true;
+        } finally {
+            compressed.release();
+        }
     }
 }
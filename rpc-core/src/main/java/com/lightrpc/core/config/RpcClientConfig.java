@@ -0,0 +1,272 @@
+package com.lightrpc.core.config;
+
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.enums.CompressTypeEnum;
+import com.lightrpc.common.enums.SerializerCodeEnum;
+import com.lightrpc.common.enums.TransportTypeEnum;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 客户端配置
+ * 每个 RpcClientProxy 持有一份，不同的客户端可以使用不同的配置
+ * 连接级别的参数 (如压缩阈值) 以第一次建立该地址连接时的配置为准
+ */
+@Data
+public class RpcClientConfig {
+
+    /**
+     * 序列化方式，服务端会用同样的方式序列化响应
+     */
+    private SerializerCodeEnum serializer = SerializerCodeEnum.JSON;
+
+    /**
+     * 压缩算法，请求和响应的消息体超过阈值时使用
+     */
+    private CompressTypeEnum compress = CompressTypeEnum.NONE;
+
+    /**
+     * 压缩阈值 (字节)，小于这个大小的请求不压缩
+     */
+    private int compressThreshold = RpcConstants.DEFAULT_COMPRESS_THRESHOLD;
+
+    /**
+     * 服务提供者在当前 JVM 里发布了 (版本和分组都匹配) 时，是否跳过网络直接调用 (默认开启)
+     * 直接调用在调用方线程上执行，不经过超时、重试、对冲和熔断
+     */
+    private boolean injvm = true;
+
+    /**
+     * 直接调用时是否拷贝参数和返回值 (默认关闭)
+     * 开启后按 serializer 序列化再反序列化一次，服务端和调用方互相改不到对方的对象，行为和远程调用一致，
+     * 代价是多一次序列化；关闭时双方共享同一批对象，服务方法不应修改参数
+     */
+    private boolean injvmCopy = false;
+
+    /**
+     * 是否优先使用同机传输 (默认开启)
+     * 实例在当前 JVM 里绑定了 LocalChannel 时用 LocalChannel，在本机且发布了 Unix Domain Socket 时用 UDS (需要 epoll)，
+     * 否则走 TCP
+     */
+    private boolean localTransport = true;
+
+    /**
+     * 负载均衡策略：random (加权随机，默认)、roundrobin (平滑加权轮询)、
+     * leastactive (最少活跃调用)、p2c (两次随机选择 + 耗时 EWMA)、consistenthash (按参数一致性哈希)，
+     * 也可以是 SPI 扩展的名称
+     */
+    private String loadBalance = "random";
+
+    /**
+     * 新实例预热时间 (毫秒)，0 表示不预热
+     * 注册不到这么久的实例，负载均衡权重从很小开始随启动时间线性增长到配置的权重 (依赖注册中心提供注册时间)
+     */
+    private long warmupMillis = 60_000;
+
+    /**
+     * 一致性哈希默认使用的参数下标 (从 0 开始)
+     * 参数按 toString 的结果哈希，必须是 String、数字、枚举这类值类型或者覆盖了 toString 的类
+     */
+    private int hashArgument = 0;
+
+    /**
+     * 按方法指定一致性哈希使用的参数下标，Key 是 "接口全类名#方法名"，优先级高于 hashArgument
+     */
+    private Map<String, Integer> hashArguments = new HashMap<>();
+
+    /**
+     * 一致性哈希每个实例的虚拟节点数 (按 4 的倍数向下取整)
+     */
+    private int hashVirtualNodes = 160;
+
+    /**
+     * 默认调用超时时间 (毫秒)，小于等于 0 表示一直等待
+     * 超时时间会随请求发给服务端，服务端发现请求已经过期就不再执行
+     */
+    private long timeoutMillis = 3000;
+
+    /**
+     * 按服务单独设置的超时时间，Key 是接口全类名，优先级高于 timeoutMillis
+     */
+    private Map<String, Long> serviceTimeouts = new HashMap<>();
+
+    /**
+     * 建立连接的超时时间 (毫秒)；调用触发的建连不会超过调用本身的超时时间
+     */
+    private int connectTimeoutMillis = 3000;
+
+    /**
+     * 每个服务端地址最少保持的连接数
+     */
+    private int poolMinSize = 1;
+
+    /**
+     * 每个服务端地址最多建立的连接数
+     */
+    private int poolMaxSize = 4;
+
+    /**
+     * 扩容阈值：最空闲的连接上在途请求数达到这个值时，新建一个连接
+     */
+    private int poolGrowThreshold = 32;
+
+    /**
+     * 空闲连接回收时间 (毫秒)，超过这个时间没有发送过请求的连接会被关闭
+     */
+    private long poolIdleTimeoutMillis = 60_000;
+
+    /**
+     * 每个连接最多同时等待响应的请求数 (向上取整到 2 的幂)，超过后新请求直接失败
+     */
+    private int maxInFlightPerConnection = 4096;
+
+    /**
+     * 网络传输实现，默认自动选择 (Linux 上优先 native epoll)，不可用时退回 NIO
+     * 所有客户端共享一个 IO 线程组，以第一次建立连接时的配置为准
+     */
+    private TransportTypeEnum transport = TransportTypeEnum.AUTO;
+
+    /**
+     * 共享 IO 线程组的线程数，小于等于 0 表示使用 Netty 默认值 (CPU 核数 * 2)
+     */
+    private int ioThreads = 0;
+
+    /**
+     * 是否开启 flush 合并 (默认关闭)
+     * 开启后同一轮 EventLoop 中写出的多个请求只 flush 一次，高并发下能大幅减少 write 系统调用，
+     * 代价是单个请求可能多等一轮 EventLoop
+     */
+    private boolean flushConsolidation = false;
+
+    /**
+     * flush 合并上限：累计这么多次 flush 后强制真正 flush 一次
+     */
+    private int flushConsolidationLimit = 256;
+
+    /**
+     * 是否开启实例熔断和离群摘除
+     * 连续失败、失败率过高或者明显比同服务其它实例慢的地址会被暂时摘除，到期后放一个请求探测，成功再恢复
+     */
+    private boolean outlierDetection = true;
+
+    /**
+     * 连续失败这么多次立即熔断 (失败指连接失败、超时、服务端 SERVER_BUSY / TOO_MANY_REQUESTS，业务异常不算)
+     */
+    private int breakerConsecutiveFailures = 5;
+
+    /**
+     * 统计窗口内失败率达到这个比例时熔断
+     */
+    private double breakerFailureRatio = 0.5;
+
+    /**
+     * 统计窗口内至少有这么多请求才按失败率和耗时判断，避免少量样本误判
+     */
+    private int breakerMinRequests = 20;
+
+    /**
+     * 统计窗口 (毫秒)
+     */
+    private long breakerWindowMillis = 10_000;
+
+    /**
+     * 第一次摘除的时长 (毫秒)，连续被摘除时按次数递增，最多 maxEjectionMillis
+     */
+    private long ejectionMillis = 30_000;
+
+    /**
+     * 最长摘除时长 (毫秒)
+     */
+    private long maxEjectionMillis = 300_000;
+
+    /**
+     * 平均耗时超过同服务实例中位数的这个倍数，认为是慢节点
+     */
+    private double outlierLatencyRatio = 3.0;
+
+    /**
+     * 慢节点的平均耗时至少比中位数多出这么多毫秒才摘除，避免耗时都很短时被小抖动误判
+     */
+    private long outlierMinLatencyMillis = 10;
+
+    /**
+     * 因为慢而被摘除的实例最多占服务实例数的百分比，失败熔断不受限制
+     */
+    private int maxEjectionPercent = 50;
+
+    /**
+     * 额外声明的幂等方法，格式 "接口全类名#方法名"，只有幂等方法会重试和发送对冲请求
+     * 接口方法上标注 @Idempotent 的不需要在这里声明；通过 invokeAsync 按名称调用时只看这里
+     */
+    private Set<String> idempotentMethods = new HashSet<>();
+
+    /**
+     * 幂等方法失败后最多重试几次，每次换一个没试过的实例，0 表示不重试
+     * 只重试连接失败、连接断开、服务端过载拒绝 (SERVER_BUSY / TOO_MANY_REQUESTS)，超时不重试
+     */
+    private int retries = 2;
+
+    /**
+     * 重试请求最多占调用总数的百分比，服务整体故障时不会因为重试让流量成倍增加
+     */
+    private int retryMaxPercent = 10;
+
+    /**
+     * 是否对幂等方法开启对冲请求 (默认关闭)
+     * 超过 hedgePercentile 分位耗时还没收到响应时，向另一个实例再发一次，取先返回的结果
+     */
+    private boolean hedging = false;
+
+    /**
+     * 对冲延迟取该方法最近耗时的这个分位数 (例如 95 表示 p95)
+     */
+    private double hedgePercentile = 95;
+
+    /**
+     * 对冲请求最多占调用总数的百分比，避免服务整体变慢时请求量翻倍
+     */
+    private int hedgeMaxPercent = 10;
+
+    /**
+     * 服务端流的接收额度：客户端最多缓存这么多个还没读取的元素，读完一半后让服务端继续发送
+     */
+    private int streamWindow = RpcConstants.DEFAULT_STREAM_WINDOW;
+
+    /**
+     * 分片大小 (字节)：编码后消息体超过这个大小就拆成多个分片发送，和其它消息交错写出，小于等于 0 表示不分片
+     * 对端版本不支持分片时设为 0
+     */
+    private int chunkSize = RpcConstants.DEFAULT_CHUNK_SIZE;
+
+    /**
+     * 每个连接上还没收齐的分片最多占用的内存 (字节)，超过时丢弃正在接收的那条消息，对应的调用失败
+     */
+    private int maxChunkedBytes = RpcConstants.DEFAULT_MAX_CHUNKED_BYTES;
+
+    /**
+     * 获取某个服务的超时时间
+     */
+    public long getTimeoutMillis(String interfaceName) {
+        Long timeout = serviceTimeouts.get(interfaceName);
+        return timeout != null ? timeout : timeoutMillis;
+    }
+
+    /**
+     * 获取某个方法一致性哈希使用的参数下标
+     */
+    public int getHashArgument(String interfaceName, String methodName) {
+        Integer index = hashArguments.get(interfaceName + "#" + methodName);
+        return index != null ? index : hashArgument;
+    }
+
+    /**
+     * 方法是否在配置里声明为幂等
+     */
+    public boolean isIdempotent(String interfaceName, String methodName) {
+        return idempotentMethods.contains(interfaceName + "#" + methodName);
+    }
+}
@@ -0,0 +1,131 @@
+package com.lightrpc.core.config;
+
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.enums.DispatchModeEnum;
+import com.lightrpc.common.enums.TransportTypeEnum;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 服务端配置
+ */
+@Data
+public class RpcServerConfig {
+
+    /**
+     * 压缩阈值 (字节)，小于这个大小的响应不压缩
+     * 压缩算法由客户端在请求里声明，服务端跟随
+     */
+    private int compressThreshold = RpcConstants.DEFAULT_COMPRESS_THRESHOLD;
+
+    /**
+     * 网络传输实现，默认自动选择 (Linux 上优先 native epoll)，不可用时退回 NIO
+     */
+    private TransportTypeEnum transport = TransportTypeEnum.AUTO;
+
+    /**
+     * Boss 线程数，只负责接收连接，通常 1 个就够了
+     */
+    private int bossThreads = 1;
+
+    /**
+     * Worker (IO) 线程数，小于等于 0 表示使用 Netty 默认值 (CPU 核数 * 2)
+     */
+    private int workerThreads = 0;
+
+    /**
+     * 额外监听的 Unix Domain Socket 路径，为空表示不监听 (需要 epoll，不可用时忽略)
+     * 路径写进注册中心的实例元数据，同一台机器上的客户端 (如 sidecar) 会改用 UDS 连接，不走 TCP 协议栈
+     */
+    private String domainSocketPath;
+
+    /**
+     * 是否额外绑定一个 Netty LocalChannel (默认关闭)
+     * 同一个 JVM 里关闭了 injvm 直连的客户端会改用 LocalChannel 连接，仍然走完整的协议编解码，但不经过网络
+     */
+    private boolean localChannel = false;
+
+    /**
+     * 业务派发模式，默认投递到业务线程池，不占用 IO 线程
+     */
+    private DispatchModeEnum dispatchMode = DispatchModeEnum.THREAD_POOL;
+
+    /**
+     * 共享业务线程池的线程数
+     */
+    private int businessThreads = 200;
+
+    /**
+     * 业务队列长度，排满后新请求直接返回 SERVER_BUSY，不再排队
+     * 虚拟线程模式下，同时执行的请求数上限为 businessThreads + businessQueueSize
+     */
+    private int businessQueueSize = 1024;
+
+    /**
+     * 按服务隔离的线程池 (舱壁)，Key: 服务名, Value: 线程数
+     * 配置了的服务使用独立的线程池和队列，慢服务不会拖垮其它服务
+     */
+    private Map<String, Integer> serviceThreads = new HashMap<>();
+
+    /**
+     * 是否开启 flush 合并 (默认关闭)
+     * 开启后同一轮 EventLoop 中写出的多个响应只 flush 一次，高并发下能大幅减少 write 系统调用，
+     * 代价是单个请求可能多等一轮 EventLoop
+     */
+    private boolean flushConsolidation = false;
+
+    /**
+     * flush 合并上限：累计这么多次 flush 后强制真正 flush 一次
+     */
+    private int flushConsolidationLimit = 256;
+
+    /**
+     * 是否开启自适应并发限制 (默认关闭)
+     * 开启后服务端根据请求耗时的变化自动调整同时处理的请求数上限，超过上限的请求只解析协议头就返回 TOO_MANY_REQUESTS，
+     * 不解压、不反序列化、不进业务队列
+     */
+    private boolean adaptiveLimit = false;
+
+    /**
+     * 自适应并发上限的初始值
+     */
+    private int adaptiveLimitInitial = 100;
+
+    /**
+     * 自适应并发上限的下限
+     */
+    private int adaptiveLimitMin = 10;
+
+    /**
+     * 自适应并发上限的上限
+     */
+    private int adaptiveLimitMax = 1000;
+
+    /**
+     * 停机时从注册中心注销后等待的时间 (毫秒)，让客户端收到下线通知，这段时间到达的请求照常处理
+     */
+    private long shutdownWaitMillis = 2000;
+
+    /**
+     * 停机时等待在途请求处理完的最长时间 (毫秒)，超时后强制关闭
+     */
+    private long shutdownTimeoutMillis = 10_000;
+
+    /**
+     * 客户端流的接收额度：服务端每个调用最多缓存这么多个还没读取的元素，读完一半后让客户端继续发送
+     */
+    private int streamWindow = RpcConstants.DEFAULT_STREAM_WINDOW;
+
+    /**
+     * 分片大小 (字节)：编码后消息体超过这个大小就拆成多个分片发送，和其它消息交错写出，小于等于 0 表示不分片
+     * 对端版本不支持分片时设为 0
+     */
+    private int chunkSize = RpcConstants.DEFAULT_CHUNK_SIZE;
+
+    /**
+     * 每个连接上还没收齐的分片最多占用的内存 (字节)，超过时丢弃正在接收的那条消息，对应的调用失败
+     */
+    private int maxChunkedBytes = RpcConstants.DEFAULT_MAX_CHUNKED_BYTES;
+}
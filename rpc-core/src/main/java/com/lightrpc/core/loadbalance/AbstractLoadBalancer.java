@@ -0,0 +1,92 @@
+package com.lightrpc.core.loadbalance;
+
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.registry.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 负载均衡器基类：只有一个候选实例时直接返回，并提供按权重随机、预热权重等公共方法
+ */
+public abstract class AbstractLoadBalancer implements LoadBalancer {
+
+    @Override
+    public ServiceInstance select(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config) {
+        if (instances.size() == 1) {
+            return instances.get(0);
+        }
+        return doSelect(instances, request, config);
+    }
+
+    protected abstract ServiceInstance doSelect(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config);
+
+    /**
+     * 实例当前的有效权重
+     * 刚启动的实例 (注册不到 warmupMillis) 权重从很小开始随启动时间线性增长，JIT 还没热起来的 JVM 不会一下子接满流量
+     */
+    protected static int getWeight(ServiceInstance instance, RpcClientConfig config) {
+        int weight = instance.getWeight();
+        long registeredAt = instance.getRegisteredAt();
+        long warmup = config.getWarmupMillis();
+        if (registeredAt <= 0 || warmup <= 0) {
+            return weight;
+        }
+        long uptime = System.currentTimeMillis() - registeredAt;
+        if (uptime <= 0) {
+            // 时钟不一致，按刚启动处理
+            return 1;
+        }
+        if (uptime >= warmup) {
+            return weight;
+        }
+        return (int) Math.max(1, weight * uptime / warmup);
+    }
+
+    /**
+     * 去掉排除的实例
+     */
+    protected static List<ServiceInstance> without(List<ServiceInstance> instances, Set<ServiceInstance> excluded) {
+        List<ServiceInstance> result = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!excluded.contains(instance)) {
+                result.add(instance);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按有效权重随机选择，权重都相同时退化为普通随机
+     */
+    protected static ServiceInstance weightedRandom(List<ServiceInstance> instances, RpcClientConfig config) {
+        int size = instances.size();
+        int[] weights = new int[size];
+        int totalWeight = 0;
+        boolean sameWeight = true;
+        for (int i = 0; i < size; i++) {
+            int weight = getWeight(instances.get(i), config);
+            weights[i] = weight;
+            totalWeight += weight;
+            if (i > 0 && weight != weights[i - 1]) {
+                sameWeight = false;
+            }
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (sameWeight) {
+            return instances.get(random.nextInt(size));
+        }
+        int offset = random.nextInt(totalWeight);
+        for (int i = 0; i < size; i++) {
+            offset -= weights[i];
+            if (offset < 0) {
+                return instances.get(i);
+            }
+        }
+        return instances.get(size - 1);
+    }
+}
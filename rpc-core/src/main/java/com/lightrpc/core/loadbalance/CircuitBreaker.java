@@ -0,0 +1,212 @@
+package com.lightrpc.core.loadbalance;
+
+import com.lightrpc.core.config.RpcClientConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个服务端地址的熔断器
+ * 1. CLOSED：正常接收流量，统计窗口内的请求数、失败数和平均耗时
+ * 2. OPEN：连续失败、失败率过高或者被判定为慢节点时摘除，摘除期间不参与负载均衡
+ * 3. HALF_OPEN：摘除到期后只放一个探测请求，成功则恢复，失败则再次摘除且摘除时间更长
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final InetSocketAddress address;
+
+    private final RpcClientConfig config;
+
+    /**
+     * 状态只在持锁时修改，选择实例时无锁读取
+     */
+    private volatile State state = State.CLOSED;
+
+    private volatile long openUntilNanos;
+
+    /**
+     * 连续被摘除的次数，决定下一次摘除多久；恢复后每过一个健康的统计窗口减一
+     */
+    private int ejections;
+
+    private int consecutiveFailures;
+
+    private long windowStartNanos = System.nanoTime();
+
+    private int requests;
+
+    private int failures;
+
+    private int successes;
+
+    private long latencySumNanos;
+
+    /**
+     * 上一个完整窗口的平均耗时，样本不足时为 0
+     */
+    private double lastMeanLatencyNanos;
+
+    CircuitBreaker(InetSocketAddress address, RpcClientConfig config) {
+        this.address = address;
+        this.config = config;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * 是否可以参与负载均衡
+     */
+    public boolean isAvailable() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * 摘除到期时抢占唯一的探测名额
+     * @return true 表示本次请求作为探测请求发给这个地址
+     */
+    public boolean tryProbe() {
+        // 先无锁判断，摘除期间的每次调用都会走到这里
+        if (state != State.OPEN || System.nanoTime() - openUntilNanos < 0) {
+            return false;
+        }
+        synchronized (this) {
+            if (state != State.OPEN) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        log.info("实例摘除到期，发送探测请求: {}", address);
+        return true;
+    }
+
+    /**
+     * 记录一次调用结果
+     * @param success      是否成功 (业务异常也算成功，说明服务端是正常的)
+     * @param latencyNanos 调用耗时
+     * @param probe        是否是半开状态下的探测请求
+     * @return 状态是否发生了变化
+     */
+    public synchronized boolean record(boolean success, long latencyNanos, boolean probe) {
+        if (state == State.HALF_OPEN) {
+            // 探测期间只看探测请求的结果，摘除前发出的请求这时才返回，不能代表现在的状态
+            if (!probe) {
+                return false;
+            }
+            if (success) {
+                close();
+            } else {
+                open("探测失败");
+            }
+            return true;
+        }
+        if (state == State.OPEN) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= TimeUnit.MILLISECONDS.toNanos(config.getBreakerWindowMillis())) {
+            rollWindow(now);
+        }
+        requests++;
+        if (success) {
+            successes++;
+            latencySumNanos += latencyNanos;
+            consecutiveFailures = 0;
+            return false;
+        }
+
+        failures++;
+        consecutiveFailures++;
+        if (consecutiveFailures >= config.getBreakerConsecutiveFailures()) {
+            open("连续失败 " + consecutiveFailures + " 次");
+            return true;
+        }
+        if (requests >= config.getBreakerMinRequests() && failures >= requests * config.getBreakerFailureRatio()) {
+            open("失败率 " + failures + "/" + requests);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 探测请求没有结果就结束了 (例如对冲的另一路先返回，探测被取消)：交还探测名额
+     * 回到摘除状态且立即到期，下一次调用重新探测；不算探测失败，摘除时间不加长
+     * @return 状态是否发生了变化
+     */
+    public synchronized boolean releaseProbe() {
+        if (state != State.HALF_OPEN) {
+            return false;
+        }
+        openUntilNanos = System.nanoTime();
+        state = State.OPEN;
+        log.info("探测请求被取消，等待下一次探测: {}", address);
+        return true;
+    }
+
+    /**
+     * 平均耗时 (纳秒)，当前窗口样本足够时用当前窗口，否则用上一个窗口，都不够时为 0
+     */
+    public synchronized double getMeanLatencyNanos() {
+        if (successes >= config.getBreakerMinRequests()) {
+            return (double) latencySumNanos / successes;
+        }
+        return lastMeanLatencyNanos;
+    }
+
+    /**
+     * 被判定为慢节点，摘除
+     * @return false 表示状态已经变了 (例如刚被其它线程熔断)，没有摘除
+     */
+    synchronized boolean ejectSlow(double meanNanos, double medianNanos) {
+        if (state != State.CLOSED) {
+            return false;
+        }
+        open(String.format("平均耗时 %.1fms，同服务中位数 %.1fms", meanNanos / 1e6, medianNanos / 1e6));
+        return true;
+    }
+
+    private void open(String reason) {
+        ejections++;
+        long duration = Math.min(config.getEjectionMillis() * ejections, config.getMaxEjectionMillis());
+        openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+        state = State.OPEN;
+        log.warn("实例被摘除 {}ms: {}, 原因: {}", duration, address, reason);
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        // 摘除前的统计已经过时，从新窗口开始
+        windowStartNanos = System.nanoTime();
+        requests = 0;
+        failures = 0;
+        successes = 0;
+        latencySumNanos = 0;
+        lastMeanLatencyNanos = 0;
+        log.info("探测成功，实例恢复: {}", address);
+    }
+
+    private void rollWindow(long now) {
+        lastMeanLatencyNanos = successes >= config.getBreakerMinRequests() ? (double) latencySumNanos / successes : 0;
+        if (ejections > 0 && failures == 0) {
+            ejections--;
+        }
+        windowStartNanos = now;
+        requests = 0;
+        failures = 0;
+        successes = 0;
+        latencySumNanos = 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.lightrpc.core.loadbalance;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个服务端地址的调用统计，供负载均衡使用
+ * 1. active：已发出还没完成的调用数 (最少活跃数策略)
+ * 2. ewma：响应耗时的指数加权平均 (P2C 策略)，变慢时立即上升，变快时按时间衰减下降
+ */
+public class EndpointStats {
+
+    private static final Map<InetSocketAddress, EndpointStats> STATS = new ConcurrentHashMap<>();
+
+    /**
+     * 衰减时间常数：10 秒前的耗时权重降到约 1/e
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private double ewmaNanos;
+
+    private long lastUpdateNanos = System.nanoTime();
+
+    public static EndpointStats of(InetSocketAddress address) {
+        return STATS.computeIfAbsent(address, key -> new EndpointStats());
+    }
+
+    /**
+     * 地址已经从注册中心下线，回收它的统计，否则实例不断扩缩容、换 IP 时统计会越积越多
+     * 还没结束的调用持有的是原来的对象，结束时照常计数，不受影响
+     */
+    public static void evict(InetSocketAddress address) {
+        STATS.remove(address);
+    }
+
+    /**
+     * 调用开始
+     * @return 开始时间，调用结束时传给 end
+     */
+    public long begin() {
+        active.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 调用结束 (无论成功失败，超时的调用会把耗时拉高，自然被降权)
+     */
+    public void end(long beginNanos) {
+        active.decrementAndGet();
+        observe(System.nanoTime() - beginNanos);
+    }
+
+    private synchronized void observe(long latencyNanos) {
+        long now = System.nanoTime();
+        if (latencyNanos > ewmaNanos) {
+            // 变慢立即生效，慢节点不会因为历史数据好看而继续接流量
+            ewmaNanos = latencyNanos;
+        } else {
+            double weight = Math.exp(-(now - lastUpdateNanos) / DECAY_NANOS);
+            ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+        }
+        lastUpdateNanos = now;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * 平均耗时 (纳秒)，还没有调用完成过时为 0
+     */
+    public synchronized double getEwmaNanos() {
+        return ewmaNanos;
+    }
+}
@@ -0,0 +1,52 @@
+package com.lightrpc.core.loadbalance;
+
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.registry.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 负载均衡器
+ * 从注册中心返回的候选实例中为一次调用选择一个实例
+ * 实现必须线程安全，同一个名字的负载均衡器全局只有一个实例
+ * 扩展方式：实现本接口，并在 META-INF/services/com.lightrpc.core.loadbalance.LoadBalancer 中声明
+ */
+public interface LoadBalancer {
+
+    /**
+     * 负载均衡器名称，对应 RpcClientConfig#loadBalance
+     */
+    String getName();
+
+    /**
+     * 选择一个实例
+     * @param instances 候选实例 (只读，至少一个)
+     * @param request   本次调用的请求
+     * @param config    发起调用的客户端配置 (策略参数从这里读取)
+     * @return 选中的实例
+     */
+    ServiceInstance select(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config);
+
+    /**
+     * 选择一个不在 excluded 里的实例 (重试、对冲时排除已经发过的实例)
+     * 候选列表还是原来的快照，有状态的策略 (轮询位置、哈希环) 不会因为每次排除的实例不同而被重置
+     * 默认实现过滤出新列表再选择，有状态的实现应该覆盖它
+     * @param excluded 不能选择的实例，调用方保证 instances 里至少有一个不在其中
+     */
+    default ServiceInstance select(List<ServiceInstance> instances, Set<ServiceInstance> excluded,
+                                   RpcRequest request, RpcClientConfig config) {
+        if (excluded.isEmpty()) {
+            return select(instances, request, config);
+        }
+        List<ServiceInstance> remaining = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!excluded.contains(instance)) {
+                remaining.add(instance);
+            }
+        }
+        return select(remaining, request, config);
+    }
+}
@@ -0,0 +1,52 @@
+package com.lightrpc.core.loadbalance;
+
+import com.lightrpc.core.loadbalance.impl.ConsistentHashLoadBalancer;
+import com.lightrpc.core.loadbalance.impl.LeastActiveLoadBalancer;
+import com.lightrpc.core.loadbalance.impl.P2cEwmaLoadBalancer;
+import com.lightrpc.core.loadbalance.impl.RandomLoadBalancer;
+import com.lightrpc.core.loadbalance.impl.RoundRobinLoadBalancer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 负载均衡器注册表
+ * 按名称索引，所有负载均衡器都是单例 (有状态的实现按服务名各自维护状态)
+ */
+@Slf4j
+public class LoadBalancerFactory {
+
+    private static final Map<String, LoadBalancer> LOAD_BALANCERS = new ConcurrentHashMap<>();
+
+    static {
+        // 内置实现
+        register(new RandomLoadBalancer());
+        register(new RoundRobinLoadBalancer());
+        register(new LeastActiveLoadBalancer());
+        register(new P2cEwmaLoadBalancer());
+        register(new ConsistentHashLoadBalancer());
+
+        // SPI 扩展实现 (名称相同时会覆盖内置实现)
+        for (LoadBalancer loadBalancer : ServiceLoader.load(LoadBalancer.class)) {
+            register(loadBalancer);
+        }
+    }
+
+    public static void register(LoadBalancer loadBalancer) {
+        LoadBalancer previous = LOAD_BALANCERS.put(loadBalancer.getName(), loadBalancer);
+        if (previous != null) {
+            log.info("负载均衡器 [{}] 覆盖了已注册的 [{}]，名称: {}",
+                    loadBalancer.getClass().getName(), previous.getClass().getName(), loadBalancer.getName());
+        }
+    }
+
+    public static LoadBalancer getLoadBalancer(String name) {
+        LoadBalancer loadBalancer = LOAD_BALANCERS.get(name);
+        if (loadBalancer == null) {
+            throw new IllegalArgumentException("不支持的负载均衡策略: " + name);
+        }
+        return loadBalancer;
+    }
+}
@@ -0,0 +1,233 @@
+package com.lightrpc.core.loadbalance;
+
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.registry.ServiceInstance;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实例熔断和离群摘除
+ * 在负载均衡之前把被摘除的实例过滤掉，注册中心的健康检查生效之前，故障或变慢的实例就不再分到流量
+ * 每个 RpcClientProxy 持有一个，按地址维护熔断器
+ */
+public class OutlierDetector {
+
+    /**
+     * 慢节点分析的最小间隔
+     */
+    private static final long ANALYZE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final RpcClientConfig config;
+
+    private final Map<InetSocketAddress, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 每个服务最近一次的过滤结果
+     */
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 任意熔断器状态变化时加一，过滤结果据此失效
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    public OutlierDetector(RpcClientConfig config) {
+        this.config = config;
+    }
+
+    public CircuitBreaker getBreaker(InetSocketAddress address) {
+        return breakers.computeIfAbsent(address, key -> new CircuitBreaker(key, config));
+    }
+
+    /**
+     * 去掉被摘除的实例
+     * 没有实例被摘除时原样返回注册中心的快照；摘除情况不变时返回同一个列表对象，负载均衡器的状态 (轮询位置、哈希环) 不会被重置
+     * 所有实例都被摘除时返回全部实例，总比直接失败好
+     */
+    public List<ServiceInstance> filter(String serviceKey, List<ServiceInstance> instances) {
+        Snapshot snapshot = snapshots.get(serviceKey);
+        long now = System.nanoTime();
+        if (snapshot == null || snapshot.source != instances || snapshot.version != version.get()
+                || now - snapshot.analyzedNanos >= ANALYZE_INTERVAL_NANOS) {
+            snapshot = rebuild(serviceKey, instances, snapshot, now);
+        }
+        return snapshot.available;
+    }
+
+    /**
+     * 找一个摘除到期的实例发送探测请求
+     * @return 探测的实例，没有需要探测的实例时为 null
+     */
+    public ServiceInstance tryProbe(String serviceKey, List<ServiceInstance> instances) {
+        Snapshot snapshot = snapshots.get(serviceKey);
+        if (snapshot == null || snapshot.source != instances) {
+            return null;
+        }
+        for (ServiceInstance instance : snapshot.ejected) {
+            if (getBreaker(instance.getAddress()).tryProbe()) {
+                version.incrementAndGet();
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次调用结果
+     */
+    public void record(InetSocketAddress address, boolean success, long latencyNanos, boolean probe) {
+        if (getBreaker(address).record(success, latencyNanos, probe)) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 探测请求被取消，没有结果，交还探测名额 (见 CircuitBreaker.releaseProbe)
+     */
+    public void releaseProbe(InetSocketAddress address) {
+        if (getBreaker(address).releaseProbe()) {
+            version.incrementAndGet();
+        }
+    }
+
+    private Snapshot rebuild(String serviceKey, List<ServiceInstance> instances, Snapshot previous, long now) {
+        long currentVersion = version.get();
+        if (ejectSlowInstances(instances)) {
+            currentVersion = version.incrementAndGet();
+        }
+
+        List<ServiceInstance> available = new ArrayList<>(instances.size());
+        List<ServiceInstance> ejected = new ArrayList<>();
+        for (ServiceInstance instance : instances) {
+            CircuitBreaker breaker = breakers.get(instance.getAddress());
+            if (breaker == null || breaker.isAvailable()) {
+                available.add(instance);
+            } else {
+                ejected.add(instance);
+            }
+        }
+
+        List<ServiceInstance> result;
+        if (ejected.isEmpty() || available.isEmpty()) {
+            result = instances;
+        } else if (previous != null && previous.available.equals(available)) {
+            result = previous.available;
+        } else {
+            result = Collections.unmodifiableList(available);
+        }
+        Snapshot snapshot = new Snapshot(instances, currentVersion, now, result, ejected);
+        snapshots.put(serviceKey, snapshot);
+        if (previous != null && previous.source != instances) {
+            prune(previous.source);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 注册中心的实例列表变化后，回收已经下线的地址的熔断器和调用统计
+     * 只保留仍在某个服务的最新快照里的地址，否则实例不断扩缩容、换 IP 时熔断器会越积越多
+     * @param removedFrom 变化之前的实例快照
+     */
+    private void prune(List<ServiceInstance> removedFrom) {
+        Set<InetSocketAddress> live = new HashSet<>();
+        for (Snapshot snapshot : snapshots.values()) {
+            for (ServiceInstance instance : snapshot.source) {
+                live.add(instance.getAddress());
+            }
+        }
+        breakers.keySet().retainAll(live);
+        for (ServiceInstance instance : removedFrom) {
+            if (!live.contains(instance.getAddress())) {
+                EndpointStats.evict(instance.getAddress());
+            }
+        }
+    }
+
+    /**
+     * 平均耗时明显高于同服务中位数的实例按慢节点摘除
+     * @return 是否有实例被摘除
+     */
+    private boolean ejectSlowInstances(List<ServiceInstance> instances) {
+        if (instances.size() < 3) {
+            // 两个实例分不清是谁不正常
+            return false;
+        }
+        int total = instances.size();
+        int closed = 0;
+        CircuitBreaker[] candidates = new CircuitBreaker[total];
+        double[] means = new double[total];
+        int count = 0;
+        for (ServiceInstance instance : instances) {
+            CircuitBreaker breaker = breakers.get(instance.getAddress());
+            if (breaker != null && !breaker.isAvailable()) {
+                continue;
+            }
+            closed++;
+            double mean = breaker == null ? 0 : breaker.getMeanLatencyNanos();
+            if (mean > 0) {
+                candidates[count] = breaker;
+                means[count++] = mean;
+            }
+        }
+        if (count < 3) {
+            return false;
+        }
+
+        double[] sorted = Arrays.copyOf(means, count);
+        Arrays.sort(sorted);
+        double median = sorted[count / 2];
+        double threshold = Math.max(median * config.getOutlierLatencyRatio(),
+                median + TimeUnit.MILLISECONDS.toNanos(config.getOutlierMinLatencyMillis()));
+
+        boolean ejected = false;
+        for (int i = 0; i < count; i++) {
+            if (means[i] <= threshold) {
+                continue;
+            }
+            // 摘除后剩下的实例不能少于配置的比例
+            if ((total - closed + 1) * 100 > total * config.getMaxEjectionPercent()) {
+                break;
+            }
+            if (candidates[i].ejectSlow(means[i], median)) {
+                closed--;
+                ejected = true;
+            }
+        }
+        return ejected;
+    }
+
+    private static class Snapshot {
+
+        /**
+         * 注册中心的实例快照
+         */
+        private final List<ServiceInstance> source;
+
+        private final long version;
+
+        private final long analyzedNanos;
+
+        private final List<ServiceInstance> available;
+
+        private final List<ServiceInstance> ejected;
+
+        Snapshot(List<ServiceInstance> source, long version, long analyzedNanos,
+                 List<ServiceInstance> available, List<ServiceInstance> ejected) {
+            this.source = source;
+            this.version = version;
+            this.analyzedNanos = analyzedNanos;
+            this.available = available;
+            this.ejected = ejected;
+        }
+    }
+}
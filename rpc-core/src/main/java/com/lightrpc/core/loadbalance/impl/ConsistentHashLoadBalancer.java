@@ -0,0 +1,253 @@
+package com.lightrpc.core.loadbalance.impl;
+
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.loadbalance.AbstractLoadBalancer;
+import com.lightrpc.registry.ServiceInstance;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一致性哈希 (Ketama)
+ * 按指定参数 (默认第一个参数，例如用户 ID) 选择实例，同一个参数值总是落到同一个实例上，服务端的本地缓存命中率更高
+ * 每个实例在环上放 hashVirtualNodes 个虚拟节点，实例上下线只影响相邻区间的参数值
+ * 不考虑实例权重
+ * 参数按 String.valueOf 的结果哈希，所以必须是值类型 (String、数字、枚举或者覆盖了 toString 的类)：
+ * 没有覆盖 toString 的对象每次调用的字符串都带着不同的内存地址，同一个值会散到不同的实例上
+ */
+@Slf4j
+public class ConsistentHashLoadBalancer extends AbstractLoadBalancer {
+
+    public static final String NAME = "consistenthash";
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JDK 不支持 MD5", e);
+        }
+    });
+
+    /**
+     * 每个服务一个哈希环
+     */
+    private final Map<String, HashRing> rings = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected ServiceInstance doSelect(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config) {
+        return route(instances, Collections.emptySet(), request, config);
+    }
+
+    /**
+     * 重试、对冲时在同一个环上顺时针找下一个没发过的实例，环不重建，也不会被缩小的列表替换掉
+     */
+    @Override
+    public ServiceInstance select(List<ServiceInstance> instances, Set<ServiceInstance> excluded,
+                                  RpcRequest request, RpcClientConfig config) {
+        if (excluded.isEmpty()) {
+            return select(instances, request, config);
+        }
+        return route(instances, excluded, request, config);
+    }
+
+    private ServiceInstance route(List<ServiceInstance> instances, Set<ServiceInstance> excluded,
+                                  RpcRequest request, RpcClientConfig config) {
+        Object[] parameters = request.getParameters();
+        int index = config.getHashArgument(request.getInterfaceName(), request.getMethodName());
+        if (parameters == null || index < 0 || index >= parameters.length) {
+            // 没有可以哈希的参数，退化为加权随机
+            return weightedRandom(excluded.isEmpty() ? instances : without(instances, excluded), config);
+        }
+
+        String serviceName = request.getServiceKey();
+        HashRing ring = rings.get(serviceName);
+        if (ring == null || ring.instances != instances || ring.virtualNodes != config.getHashVirtualNodes()) {
+            ring = rebuild(serviceName, instances, config.getHashVirtualNodes());
+        }
+        return ring.select(hash(md5(String.valueOf(parameters[index])), 0), excluded);
+    }
+
+    /**
+     * 创建代理时检查接口里每个方法用来哈希的参数类型，没有覆盖 toString 的类型 (以及数组) 打警告
+     * 只在创建代理时检查一次，不影响调用；参数声明为接口或 Object 时看不出实际类型，不检查
+     */
+    public static void checkHashArguments(Class<?> serviceInterface, RpcClientConfig config) {
+        for (Method method : serviceInterface.getMethods()) {
+            int index = config.getHashArgument(serviceInterface.getName(), method.getName());
+            Class<?>[] types = method.getParameterTypes();
+            if (index < 0 || index >= types.length || isValueType(types[index])) {
+                continue;
+            }
+            log.warn("一致性哈希使用 {}#{} 的第 {} 个参数 (从 0 开始), 它的类型 {} 没有覆盖 toString, 同一个值可能落到不同的实例上",
+                    serviceInterface.getName(), method.getName(), index, types[index].getName());
+        }
+    }
+
+    private static boolean isValueType(Class<?> type) {
+        if (type.isPrimitive() || type.isInterface() || type == Object.class) {
+            return true;
+        }
+        if (type.isArray()) {
+            return false;
+        }
+        if (Modifier.isAbstract(type.getModifiers())) {
+            // 抽象类的子类可能覆盖了 toString
+            return true;
+        }
+        try {
+            return type.getMethod("toString").getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 实例列表变化时重建哈希环
+     * 留下来的实例复用已经算好的虚拟节点，只为新实例计算 MD5，再和旧节点归并成新的有序数组
+     */
+    private synchronized HashRing rebuild(String serviceName, List<ServiceInstance> instances, int virtualNodes) {
+        HashRing old = rings.get(serviceName);
+        if (old != null && old.instances == instances && old.virtualNodes == virtualNodes) {
+            return old;
+        }
+
+        Map<InetSocketAddress, ServiceInstance> current = new HashMap<>();
+        for (ServiceInstance instance : instances) {
+            current.put(instance.getAddress(), instance);
+        }
+        boolean reusable = old != null && old.virtualNodes == virtualNodes;
+
+        // 1. 旧环上还在的节点 (本来就有序)，归属换成新快照里的实例对象
+        int keptCount = 0;
+        long[] keptHashes = new long[reusable ? old.hashes.length : 0];
+        ServiceInstance[] keptOwners = new ServiceInstance[keptHashes.length];
+        Set<InetSocketAddress> known = new HashSet<>();
+        if (reusable) {
+            for (int i = 0; i < old.hashes.length; i++) {
+                ServiceInstance owner = current.get(old.owners[i].getAddress());
+                if (owner != null) {
+                    keptHashes[keptCount] = old.hashes[i];
+                    keptOwners[keptCount] = owner;
+                    keptCount++;
+                    known.add(owner.getAddress());
+                }
+            }
+        }
+
+        // 2. 新实例的虚拟节点，每个 MD5 摘要切成 4 个 32 位哈希值
+        TreeMap<Long, ServiceInstance> added = new TreeMap<>();
+        for (ServiceInstance instance : instances) {
+            if (known.contains(instance.getAddress())) {
+                continue;
+            }
+            InetSocketAddress address = instance.getAddress();
+            for (int i = 0; i < virtualNodes / 4; i++) {
+                byte[] digest = md5(address.getHostString() + ":" + address.getPort() + "-" + i);
+                for (int h = 0; h < 4; h++) {
+                    added.put(hash(digest, h), instance);
+                }
+            }
+        }
+
+        // 3. 归并两个有序序列
+        long[] hashes = new long[keptCount + added.size()];
+        ServiceInstance[] owners = new ServiceInstance[hashes.length];
+        Iterator<Map.Entry<Long, ServiceInstance>> iterator = added.entrySet().iterator();
+        Map.Entry<Long, ServiceInstance> next = iterator.hasNext() ? iterator.next() : null;
+        int i = 0;
+        for (int k = 0; k < hashes.length; k++) {
+            if (next == null || i < keptCount && keptHashes[i] <= next.getKey()) {
+                hashes[k] = keptHashes[i];
+                owners[k] = keptOwners[i++];
+            } else {
+                hashes[k] = next.getKey();
+                owners[k] = next.getValue();
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+        }
+
+        HashRing ring = new HashRing(instances, virtualNodes, hashes, owners);
+        rings.put(serviceName, ring);
+        return ring;
+    }
+
+    private static byte[] md5(String key) {
+        MessageDigest md5 = MD5.get();
+        md5.reset();
+        return md5.digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 取摘要中第 number 组 4 个字节，拼成一个无符号 32 位整数
+     */
+    private static long hash(byte[] digest, int number) {
+        return ((long) (digest[3 + number * 4] & 0xFF) << 24
+                | (long) (digest[2 + number * 4] & 0xFF) << 16
+                | (long) (digest[1 + number * 4] & 0xFF) << 8
+                | (digest[number * 4] & 0xFF))
+                & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 哈希环：按哈希值排序的虚拟节点和它们所属的实例，创建后不再修改，选择时无锁
+     */
+    private static class HashRing {
+
+        /**
+         * 构建时的实例快照，快照变了说明需要重建
+         */
+        private final List<ServiceInstance> instances;
+
+        private final int virtualNodes;
+
+        private final long[] hashes;
+
+        private final ServiceInstance[] owners;
+
+        HashRing(List<ServiceInstance> instances, int virtualNodes, long[] hashes, ServiceInstance[] owners) {
+            this.instances = instances;
+            this.virtualNodes = virtualNodes;
+            this.hashes = hashes;
+            this.owners = owners;
+        }
+
+        /**
+         * 顺时针找到第一个哈希值不小于 hash 的节点，超过最大值时回到环的起点
+         */
+        ServiceInstance select(long hash, Set<ServiceInstance> excluded) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            // 跳过排除的实例，继续顺时针找
+            for (int i = 0; i < owners.length; i++) {
+                ServiceInstance owner = owners[(index + i) % owners.length];
+                if (excluded.isEmpty() || !excluded.contains(owner)) {
+                    return owner;
+                }
+            }
+            return owners[index == hashes.length ? 0 : index];
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.lightrpc.core.loadbalance.impl;
+
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.loadbalance.AbstractLoadBalancer;
+import com.lightrpc.core.loadbalance.EndpointStats;
+import com.lightrpc.registry.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 最少活跃调用数
+ * 选择在途调用最少的实例，处理得快的实例在途调用少，自然分到更多请求
+ * 活跃数相同的实例之间按权重随机
+ */
+public class LeastActiveLoadBalancer extends AbstractLoadBalancer {
+
+    public static final String NAME = "leastactive";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected ServiceInstance doSelect(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config) {
+        int leastActive = Integer.MAX_VALUE;
+        List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            int active = EndpointStats.of(instance.getAddress()).getActive();
+            if (active < leastActive) {
+                leastActive = active;
+                candidates.clear();
+                candidates.add(instance);
+            } else if (active == leastActive) {
+                candidates.add(instance);
+            }
+        }
+        return candidates.size() == 1 ? candidates.get(0) : weightedRandom(candidates, config);
+    }
+}
@@ -0,0 +1,47 @@
+package com.lightrpc.core.loadbalance.impl;
+
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.loadbalance.AbstractLoadBalancer;
+import com.lightrpc.core.loadbalance.EndpointStats;
+import com.lightrpc.registry.ServiceInstance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 两次随机选择 + 耗时 EWMA (Power of Two Choices)
+ * 随机挑两个实例，选 "平均耗时 × (在途调用数 + 1) / 权重" 更小的那个
+ * 只比较两个实例，开销和随机差不多，却能避开慢节点；又不像全局最优那样让所有客户端同时涌向同一个实例
+ */
+public class P2cEwmaLoadBalancer extends AbstractLoadBalancer {
+
+    public static final String NAME = "p2c";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected ServiceInstance doSelect(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = instances.size();
+        int first = random.nextInt(size);
+        // 在剩下的 size - 1 个里选第二个，保证两个不同
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        return cost(a, config) <= cost(b, config) ? a : b;
+    }
+
+    private static double cost(ServiceInstance instance, RpcClientConfig config) {
+        EndpointStats stats = EndpointStats.of(instance.getAddress());
+        // 还没有耗时数据的新实例代价只看在途数，会先被探测一下
+        return (stats.getEwmaNanos() + 1) * (stats.getActive() + 1) / getWeight(instance, config);
+    }
+}
@@ -0,0 +1,26 @@
+package com.lightrpc.core.loadbalance.impl;
+
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.loadbalance.AbstractLoadBalancer;
+import com.lightrpc.registry.ServiceInstance;
+
+import java.util.List;
+
+/**
+ * 加权随机 (默认策略)
+ */
+public class RandomLoadBalancer extends AbstractLoadBalancer {
+
+    public static final String NAME = "random";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected ServiceInstance doSelect(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config) {
+        return weightedRandom(instances, config);
+    }
+}
@@ -0,0 +1,89 @@
+package com.lightrpc.core.loadbalance.impl;
+
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.loadbalance.AbstractLoadBalancer;
+import com.lightrpc.registry.ServiceInstance;
+
+import java.util.List;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 平滑加权轮询 (与 Nginx 相同的算法)
+ * 每次选择时所有实例的当前权重加上自身权重，选出当前权重最大的实例，再减去总权重
+ * 权重 5:1:1 时选择顺序为 a a b a c a a，不会连续把请求压到高权重实例上
+ */
+public class RoundRobinLoadBalancer extends AbstractLoadBalancer {
+
+    public static final String NAME = "roundrobin";
+
+    /**
+     * 每个服务一份轮询状态
+     */
+    private final Map<String, RoundRobinState> states = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected ServiceInstance doSelect(List<ServiceInstance> instances, RpcRequest request, RpcClientConfig config) {
+        RoundRobinState state = states.computeIfAbsent(request.getServiceKey(), key -> new RoundRobinState());
+        return state.next(instances, Collections.emptySet(), config);
+    }
+
+    /**
+     * 重试、对冲时在原快照上轮询，跳过已经发过的实例，轮询状态保持不变
+     */
+    @Override
+    public ServiceInstance select(List<ServiceInstance> instances, Set<ServiceInstance> excluded,
+                                  RpcRequest request, RpcClientConfig config) {
+        if (excluded.isEmpty()) {
+            return select(instances, request, config);
+        }
+        RoundRobinState state = states.computeIfAbsent(request.getServiceKey(), key -> new RoundRobinState());
+        return state.next(instances, excluded, config);
+    }
+
+    private static class RoundRobinState {
+
+        /**
+         * 上一次选择时的实例快照，快照变了 (实例上下线) 就重新开始
+         */
+        private List<ServiceInstance> instances;
+
+        private long[] currentWeights;
+
+        /**
+         * @param excluded 本轮不参与的实例，它们的当前权重保持不变
+         */
+        synchronized ServiceInstance next(List<ServiceInstance> snapshot, Set<ServiceInstance> excluded,
+                                          RpcClientConfig config) {
+            if (snapshot != instances) {
+                instances = snapshot;
+                currentWeights = new long[snapshot.size()];
+            }
+
+            int totalWeight = 0;
+            int best = -1;
+            for (int i = 0; i < currentWeights.length; i++) {
+                ServiceInstance instance = snapshot.get(i);
+                if (!excluded.isEmpty() && excluded.contains(instance)) {
+                    continue;
+                }
+                int weight = getWeight(instance, config);
+                currentWeights[i] += weight;
+                totalWeight += weight;
+                if (best < 0 || currentWeights[i] > currentWeights[best]) {
+                    best = i;
+                }
+            }
+            currentWeights[best] -= totalWeight;
+            return snapshot.get(best);
+        }
+    }
+}
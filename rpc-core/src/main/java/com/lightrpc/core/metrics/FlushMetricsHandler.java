@@ -0,0 +1,55 @@
+package com.lightrpc.core.metrics;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 写出统计：真正写到 Socket 的消息数和 flush 次数
+ * 必须放在 Pipeline 的最前面 (紧挨 head)，这样统计到的是合并之后实际发生的 flush，
+ * 每次 flush 对应一次 write 系统调用，messages / flushes 就是平均每次系统调用发出的消息数
+ */
+@ChannelHandler.Sharable
+public class FlushMetricsHandler extends ChannelOutboundHandlerAdapter {
+
+    private final LongAdder messages = new LongAdder();
+
+    private final LongAdder flushes = new LongAdder();
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        messages.increment();
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        flushes.increment();
+        ctx.flush();
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * 平均每次 flush 发出的消息数
+     */
+    public double getMessagesPerFlush() {
+        long flushCount = flushes.sum();
+        return flushCount == 0 ? 0 : (double) messages.sum() / flushCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("messages=%d, flushes=%d, messagesPerFlush=%.2f",
+                getMessages(), getFlushes(), getMessagesPerFlush());
+    }
+}
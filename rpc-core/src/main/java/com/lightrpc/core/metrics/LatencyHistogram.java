@@ -0,0 +1,108 @@
+package com.lightrpc.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时分布直方图，用来估算分位数 (例如 p95)
+ * 桶按 2 的幂划分，每个 2 的幂再等分成 4 份，相对误差不超过 25%，覆盖 1 微秒到约 1 分钟
+ * 记录只是一次原子自增；统计只看最近两个窗口，服务变快或变慢后分位数会跟着变化
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 2^26 微秒约 67 秒，更长的耗时都算进最后一个桶
+     */
+    private static final int MAX_EXPONENT = 26;
+
+    private static final int BUCKETS = (MAX_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final long windowNanos;
+
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+
+    private volatile long windowStartNanos = System.nanoTime();
+
+    /**
+     * @param windowMillis 统计窗口 (毫秒)，分位数基于最近一到两个窗口的数据
+     */
+    public LatencyHistogram(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    public void record(long latencyNanos) {
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= windowNanos) {
+            rotate(now);
+        }
+        current.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    }
+
+    /**
+     * 估算分位数
+     * @param percentile 百分位 (0, 100]
+     * @param minSamples 样本少于这个数时认为还不可信
+     * @return 分位数 (纳秒，取桶的上界)，样本不足时返回 -1
+     */
+    public long percentileNanos(double percentile, long minSamples) {
+        AtomicLongArray a = current;
+        AtomicLongArray b = previous;
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = a.get(i) + b.get(i);
+            total += counts[i];
+        }
+        if (total == 0 || total < minSamples) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return TimeUnit.MICROSECONDS.toNanos(upperBoundMicros(i));
+            }
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBoundMicros(BUCKETS - 1));
+    }
+
+    private synchronized void rotate(long now) {
+        if (now - windowStartNanos < windowNanos) {
+            return;
+        }
+        previous = current;
+        current = new AtomicLongArray(BUCKETS);
+        windowStartNanos = now;
+    }
+
+    /**
+     * 桶下标：高位是 2 的幂次，低 2 位是最高位之后的两位
+     */
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BUCKET_BITS));
+    }
+}
@@ -0,0 +1,117 @@
+package com.lightrpc.core.proxy;
+
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import com.lightrpc.common.model.RpcRequest;
+import com.lightrpc.common.model.RpcResponse;
+import com.lightrpc.common.serializer.Serializer;
+import com.lightrpc.common.serializer.SerializerFactory;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.server.LocalRegistry;
+import com.lightrpc.core.server.MethodInvoker;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内直连调用
+ * 服务提供者就在当前 JVM 里 (已经发布到 LocalRegistry，版本和分组都匹配) 时，
+ * 不经过序列化、Netty 和回环网络，在调用方线程上直接调用服务对象
+ * 结果同样包装成 RpcResponse，业务异常和远程调用一样以 RpcException 抛给调用方
+ */
+@Slf4j
+class InJvmInvoker {
+
+    private final RpcClientConfig config;
+
+    /**
+     * 已经打印过日志的服务标识，每个服务只提示一次
+     */
+    private final Set<String> announced = ConcurrentHashMap.newKeySet();
+
+    InJvmInvoker(RpcClientConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @return 响应 Future；当前 JVM 里没有对应的服务方法时返回 null，由调用方走远程调用
+     */
+    CompletableFuture<RpcResponse> invoke(RpcRequest request) {
+        String serviceKey = request.getServiceKey();
+        MethodInvoker invoker = LocalRegistry.getInvoker(serviceKey, request.getMethodName(), request.getParamTypes());
+        if (invoker == null) {
+            return null;
+        }
+        if (announced.add(serviceKey)) {
+            log.info("服务提供者在当前 JVM 内，直接本地调用: {}{}", serviceKey, config.isInjvmCopy() ? " (参数和返回值拷贝)" : "");
+        }
+
+        // 拷贝模式下参数和返回值都按配置的序列化方式走一遍，双方都改不到对方的对象，行为和远程调用一致
+        // 流式方法的数据流无法整体拷贝，直接交给对方
+        Serializer serializer = config.isInjvmCopy() && !invoker.isStreaming()
+                ? SerializerFactory.getSerializer(config.getSerializer().getCode()) : null;
+        Object[] parameters = request.getParameters();
+        if (serializer != null) {
+            parameters = copy(serializer, request, RpcRequest.class).getParameters();
+            invoker.convertParameters(parameters, serializer);
+        }
+
+        CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+        Object result;
+        try {
+            result = invoker.invoke(parameters);
+        } catch (Throwable e) {
+            future.complete(failResponse(e));
+            return future;
+        }
+
+        // 异步服务方法：等服务返回的 Future 完成
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, throwable) -> {
+                if (throwable != null) {
+                    future.complete(failResponse(throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable));
+                } else {
+                    completeSuccess(future, value, serializer, invoker);
+                }
+            });
+            return future;
+        }
+
+        completeSuccess(future, result, serializer, invoker);
+        return future;
+    }
+
+    private static void completeSuccess(CompletableFuture<RpcResponse> future, Object result, Serializer serializer,
+                                        MethodInvoker invoker) {
+        RpcResponse response = new RpcResponse();
+        response.setCode(ResponseCodeEnum.SUCCESS.getCode());
+        response.setMessage(ResponseCodeEnum.SUCCESS.getMessage());
+        response.setData(result);
+        try {
+            if (serializer != null) {
+                // 和参数一样，JSON 拷贝出来的结果要按方法的返回类型转换 (数字是 Double、对象是 Map)
+                response = copy(serializer, response, RpcResponse.class);
+                response.setData(serializer.convert(response.getData(), invoker.getResultType()));
+            }
+            future.complete(response);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static RpcResponse failResponse(Throwable e) {
+        log.error("本地调用执行失败", e);
+        RpcResponse response = new RpcResponse();
+        response.setCode(ResponseCodeEnum.FAIL.getCode());
+        response.setMessage("Fail: " + e.getMessage());
+        return response;
+    }
+
+    private static <T> T copy(Serializer serializer, T object, Class<T> clazz) {
+        return serializer.deserialize(serializer.serialize(object), clazz);
+    }
+}
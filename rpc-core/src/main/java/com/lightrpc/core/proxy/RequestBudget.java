@@ -0,0 +1,53 @@
+package com.lightrpc.core.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 额外请求 (重试、对冲请求) 的令牌桶预算
+ * 每个正常调用存入 ratio 个令牌，每个额外请求取走一个，额外请求占调用总数的比例不会超过 ratio
+ * 桶容量有限，长时间没有额外请求也攒不出一大批
+ */
+class RequestBudget {
+
+    /**
+     * 令牌按千分之一计数，避免浮点运算
+     */
+    private static final long UNIT = 1000;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final AtomicLong tokens;
+
+    /**
+     * @param ratio     额外请求占调用总数的比例上限
+     * @param maxTokens 桶里最多攒多少个令牌
+     */
+    RequestBudget(double ratio, int maxTokens) {
+        this.deposit = (long) (ratio * UNIT);
+        this.capacity = maxTokens * UNIT;
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    void deposit() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < UNIT) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - UNIT));
+        return true;
+    }
+}
@@ -1,43 +1,117 @@
 package com.lightrpc.core.proxy;
 
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import com.lightrpc.common.exception.RpcException;
 import com.lightrpc.common.model.RpcMessage;
 import com.lightrpc.common.model.RpcResponse;
+import com.lightrpc.core.client.ConnectionPool;
 import com.lightrpc.core.client.RpcClient;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.stream.StreamCall;
+import com.lightrpc.core.transport.LocalEndpoints;
+import com.lightrpc.registry.ServiceInstance;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 客户端连接工厂 (单例)
- * 负责复用 RpcClient，避免重复建立连接
+ * 负责复用连接，每个服务端地址对应一个连接池，避免重复建立连接
  */
 @Slf4j
 public class RpcClientFactory {
 
-    // 缓存：Key 是 "IP:Port", Value 是建立好的 RpcClient
-    private static final Map<String, RpcClient> CLIENT_CACHE = new ConcurrentHashMap<>();
+    // 缓存：Key 是 "IP:Port" (UDS 为 "unix:路径"，LocalChannel 为 "local:名称"), Value 是该地址的连接池
+    private static final Map<String, ConnectionPool> POOL_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 定期回收空闲连接和已断开的连接
+     */
+    private static final ScheduledExecutorService CLEANER =
+            Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("rpc-pool-cleaner", true));
+
+    static {
+        CLEANER.scheduleWithFixedDelay(() -> POOL_CACHE.values().forEach(pool -> {
+            try {
+                pool.shrink();
+            } catch (Exception e) {
+                log.warn("回收空闲连接失败", e);
+            }
+        }), 10, 10, TimeUnit.SECONDS);
+    }
 
     /**
      * 发送请求（自动复用连接）
+     * @param timeoutMillis 等待响应的超时时间 (毫秒)，小于等于 0 表示不超时
+     */
+    public static CompletableFuture<RpcResponse> sendRequest(String host, int port, RpcMessage message,
+                                                             long timeoutMillis, RpcClientConfig config) {
+        return sendRequest(InetSocketAddress.createUnresolved(host, port), message, timeoutMillis, config, null);
+    }
+
+    /**
+     * 向注册中心返回的实例发送请求
+     * 开启 localTransport 时，实例在当前 JVM 或本机上就改用 LocalChannel / Unix Domain Socket 连接
+     */
+    public static CompletableFuture<RpcResponse> sendRequest(ServiceInstance instance, RpcMessage message,
+                                                             long timeoutMillis, RpcClientConfig config) {
+        return sendRequest(instance, message, timeoutMillis, config, null);
+    }
+
+    /**
+     * 发送流式调用，数据流和请求走同一个连接
+     * @param streamCall 流式调用的状态，普通调用为 null
+     */
+    public static CompletableFuture<RpcResponse> sendRequest(ServiceInstance instance, RpcMessage message,
+                                                             long timeoutMillis, RpcClientConfig config,
+                                                             StreamCall streamCall) {
+        SocketAddress address = config.isLocalTransport()
+                ? LocalEndpoints.resolve(instance, RpcClient.supportsDomainSocket(config))
+                : instance.getAddress();
+        return sendRequest(address, message, timeoutMillis, config, streamCall);
+    }
+
+    private static CompletableFuture<RpcResponse> sendRequest(SocketAddress address, RpcMessage message,
+                                                              long timeoutMillis, RpcClientConfig config,
+                                                              StreamCall streamCall) {
+        String addressKey = RpcClient.describe(address);
+
+        // computeIfAbsent: 如果缓存里有，直接返回；没有则创建连接池并放入缓存
+        // 连接池按需建立连接，连接断开后下次选择时会自动重连
+        ConnectionPool pool = POOL_CACHE.computeIfAbsent(addressKey, key -> new ConnectionPool(address, config));
+
+        // 选择在途请求最少的连接发送
+        // 需要建立连接时，建连时间不超过调用的超时时间，建连花掉的时间从等待响应的时间里扣除
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        RpcClient client = pool.acquire(timeoutMillis);
+        if (timeoutMillis <= 0) {
+            return client.sendRequest(message, timeoutMillis, streamCall);
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0) {
+            CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(new RpcException(ResponseCodeEnum.TIMEOUT,
+                    "RPC调用超时: " + timeoutMillis + "ms, 建立连接已经用完了超时时间"));
+            return future;
+        }
+        return client.sendRequest(message, remainingMillis, streamCall);
+    }
+
+    /**
+     * 关闭所有连接池并释放共享的 IO 线程组
+     * 应用退出时调用；之后再发请求会重新建立连接和线程组
      */
-    public static CompletableFuture<RpcResponse> sendRequest(String host, int port, RpcMessage message) {
-        String addressKey = host + ":" + port;
-
-        // computeIfAbsent: 如果缓存里有，直接返回；没有则执行后面的 lambda 创建并放入缓存
-        RpcClient client = CLIENT_CACHE.computeIfAbsent(addressKey, key -> {
-            log.info("创建新的连接: {}", key);
-            RpcClient newClient = new RpcClient(host, port);
-            // 建立连接
-            newClient.connect();
-            return newClient;
-        });
-
-        // 此时 client 已经是连接状态，直接发送即可
-        // TODO：这里其实还缺少一个环节：如果连接断开了（服务端挂了），需要移除缓存重连。
-        // 这一步我们放到后面的"心跳检测"环节去完善。
-
-        return client.sendRequest(message);
+    public static void shutdown() {
+        POOL_CACHE.values().forEach(ConnectionPool::close);
+        POOL_CACHE.clear();
+        RpcClient.shutdownEventLoopGroup();
     }
-}
\ No newline at end of file
+}
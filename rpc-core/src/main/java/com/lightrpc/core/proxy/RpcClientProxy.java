@@ -1,32 +1,126 @@
 package com.lightrpc.core.proxy;
 
+import com.lightrpc.api.annotation.Idempotent;
+import com.lightrpc.common.constants.RpcConstants;
 import com.lightrpc.common.enums.MessageTypeEnum;
-import com.lightrpc.common.enums.SerializerCodeEnum;
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import com.lightrpc.common.exception.RpcException;
 import com.lightrpc.common.model.RpcMessage;
 import com.lightrpc.common.model.RpcRequest;
 import com.lightrpc.common.model.RpcResponse;
-import com.lightrpc.core.client.RpcClient;
+import com.lightrpc.common.serializer.SerializerFactory;
+import com.lightrpc.core.client.RpcTimer;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.loadbalance.EndpointStats;
+import com.lightrpc.core.loadbalance.LoadBalancer;
+import com.lightrpc.core.loadbalance.LoadBalancerFactory;
+import com.lightrpc.core.loadbalance.OutlierDetector;
+import com.lightrpc.core.loadbalance.impl.ConsistentHashLoadBalancer;
+import com.lightrpc.core.metrics.LatencyHistogram;
+import com.lightrpc.core.server.MethodInvoker;
+import com.lightrpc.core.stream.StreamCall;
+import com.lightrpc.registry.ServiceInstance;
 import com.lightrpc.registry.ServiceRegistry;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
-import java.util.UUID;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 @Slf4j
 public class RpcClientProxy implements InvocationHandler {
 
+    /**
+     * 对冲延迟统计的窗口
+     */
+    private static final long HEDGE_WINDOW_MILLIS = 30_000;
+
+    /**
+     * 耗时样本少于这个数时不对冲，分位数还不可信
+     */
+    private static final long HEDGE_MIN_SAMPLES = 100;
+
+    /**
+     * 重发线程池的线程数和队列长度
+     */
+    private static final int RESEND_THREADS = 16;
+    private static final int RESEND_QUEUE_SIZE = 1024;
+
+    /**
+     * 对冲请求和重试在这里发出，时间轮线程和 IO 线程上不能做可能阻塞的事 (例如建立连接)
+     * 有界：排满后不再重试或对冲，调用按已有的结果结束
+     */
+    private static final ThreadPoolExecutor RESEND_EXECUTOR = newResendExecutor();
+
     private final ServiceRegistry serviceRegistry;
 
+    private final RpcClientConfig config;
+
+    private final LoadBalancer loadBalancer;
+
+    /**
+     * 实例熔断和离群摘除，未开启时为 null
+     */
+    private final OutlierDetector outlierDetector;
+
+    /**
+     * 每个方法的耗时分布，Key: "接口全类名#方法名"，用来计算对冲延迟
+     */
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * 代理方法结果的声明类型 (异步方法是 Future 里的类型)，远程结果按它转换
+     */
+    private final Map<Method, Type> resultTypes = new ConcurrentHashMap<>();
+
+    private final RequestBudget hedgeBudget;
+
+    private final RequestBudget retryBudget;
+
+    /**
+     * 进程内直连调用，未开启时为 null
+     */
+    private final InJvmInvoker inJvmInvoker;
+
     public RpcClientProxy(ServiceRegistry serviceRegistry) {
+        this(serviceRegistry, new RpcClientConfig());
+    }
+
+    public RpcClientProxy(ServiceRegistry serviceRegistry, RpcClientConfig config) {
         this.serviceRegistry = serviceRegistry;
+        this.config = config;
+        this.loadBalancer = LoadBalancerFactory.getLoadBalancer(config.getLoadBalance());
+        this.outlierDetector = config.isOutlierDetection() ? new OutlierDetector(config) : null;
+        this.hedgeBudget = new RequestBudget(config.getHedgeMaxPercent() / 100.0, 10);
+        this.retryBudget = new RequestBudget(config.getRetryMaxPercent() / 100.0, 10);
+        this.inJvmInvoker = config.isInjvm() ? new InJvmInvoker(config) : null;
     }
 
+    /**
+     * 生成调用默认版本、不分组服务的代理
+     */
     @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> clazz) {
+        checkHashArguments(clazz);
         return (T) Proxy.newProxyInstance(
                 clazz.getClassLoader(),
                 new Class<?>[]{clazz},
@@ -34,40 +128,467 @@ public class RpcClientProxy implements InvocationHandler {
         );
     }
 
+    /**
+     * 生成只调用指定版本和分组服务的代理
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getProxy(Class<T> clazz, String version, String group) {
+        checkHashArguments(clazz);
+        return (T) Proxy.newProxyInstance(
+                clazz.getClassLoader(),
+                new Class<?>[]{clazz},
+                (proxy, method, args) -> invoke(method, args, version, group)
+        );
+    }
+
+    /**
+     * 使用一致性哈希时，创建代理就检查哈希参数的类型，不在每次调用时检查
+     */
+    private void checkHashArguments(Class<?> clazz) {
+        if (loadBalancer instanceof ConsistentHashLoadBalancer) {
+            ConsistentHashLoadBalancer.checkHashArguments(clazz, config);
+        }
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        return invoke(method, args, RpcConstants.DEFAULT_VERSION, RpcConstants.DEFAULT_GROUP);
+    }
+
+    private Object invoke(Method method, Object[] args, String version, String group) throws Throwable {
+        String interfaceName = method.getDeclaringClass().getName();
+        boolean idempotent = method.isAnnotationPresent(Idempotent.class) || config.isIdempotent(interfaceName, method.getName());
+        StreamCall streamCall = StreamCall.of(method, args, config.getStreamWindow());
+        CompletableFuture<Object> future = invokeAsync(interfaceName, version, group,
+                method.getName(), method.getParameterTypes(), args, config.getTimeoutMillis(interfaceName), idempotent,
+                streamCall, resultTypes.computeIfAbsent(method, MethodInvoker::resultType));
+
+        // 返回值是 CompletableFuture (或它的父接口) 的方法：直接把 Future 交给调用方，不占用线程等待
+        if (isAsync(method)) {
+            return future;
+        }
+
+        try {
+            return future.get(); // 阻塞等待
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 通用异步调用入口，不需要服务接口上声明 CompletableFuture 返回值
+     * 返回的 Future 在收到响应时由 IO 线程直接完成，回调里不要做阻塞操作
+     * @param interfaceName  接口全类名
+     * @param methodName     方法名
+     * @param parameterTypes 参数类型 (用于服务端定位方法)
+     * @param args           参数值
+     */
+    public <T> CompletableFuture<T> invokeAsync(String interfaceName, String methodName, Class<?>[] parameterTypes, Object[] args) {
+        return invokeAsync(interfaceName, methodName, parameterTypes, args, config.getTimeoutMillis(interfaceName));
+    }
+
+    /**
+     * 指定本次调用超时时间的异步调用
+     * @param timeoutMillis 超时时间 (毫秒)，小于等于 0 表示一直等待；超时后 Future 以 RpcException(TIMEOUT) 失败
+     */
+    public <T> CompletableFuture<T> invokeAsync(String interfaceName, String methodName, Class<?>[] parameterTypes,
+                                                Object[] args, long timeoutMillis) {
+        return invokeAsync(interfaceName, RpcConstants.DEFAULT_VERSION, RpcConstants.DEFAULT_GROUP,
+                methodName, parameterTypes, args, timeoutMillis);
+    }
+
+    /**
+     * 调用指定版本和分组的服务
+     * @param version 版本号，为空时使用默认版本
+     * @param group   分组，为空表示不分组
+     */
+    public <T> CompletableFuture<T> invokeAsync(String interfaceName, String version, String group, String methodName,
+                                                Class<?>[] parameterTypes, Object[] args, long timeoutMillis) {
+        return invokeAsync(interfaceName, version, group, methodName, parameterTypes, args, timeoutMillis,
+                config.isIdempotent(interfaceName, methodName), null, null);
+    }
+
+    /**
+     * @param idempotent 方法是否幂等，幂等方法才会重试和发送对冲请求
+     * @param streamCall 流式调用的状态，普通方法为 null
+     * @param resultType 结果的声明类型，远程结果按它转换 (JSON 里数字是 Double、对象是 Map)；为 null 时原样返回
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> invokeAsync(String interfaceName, String version, String group, String methodName,
+                                                 Class<?>[] parameterTypes, Object[] args, long timeoutMillis,
+                                                 boolean idempotent, StreamCall streamCall, Type resultType) {
         // 1. 构建请求体
         RpcRequest rpcRequest = new RpcRequest();
-        rpcRequest.setRequestId(Math.abs(UUID.randomUUID().getMostSignificantBits()));
-        rpcRequest.setInterfaceName(method.getDeclaringClass().getName());
-        rpcRequest.setMethodName(method.getName());
-        rpcRequest.setParameters(args);
-        rpcRequest.setParamTypes(getParameterTypes(method.getParameterTypes()));
+        rpcRequest.setInterfaceName(interfaceName);
+        rpcRequest.setVersion(version);
+        rpcRequest.setGroup(group);
+        rpcRequest.setMethodName(methodName);
+        rpcRequest.setParameters(streamCall == null ? args : streamCall.parameters(args));
+        rpcRequest.setParamTypes(getParameterTypes(parameterTypes));
+
+        CompletableFuture<RpcResponse> future = null;
+        boolean remote = false;
+        try {
+            // 2. 服务提供者就在当前 JVM 里时直接调用，不走网络
+            if (inJvmInvoker != null) {
+                future = inJvmInvoker.invoke(rpcRequest);
+            }
+            if (future == null) {
+                remote = true;
+                future = invokeRemote(rpcRequest, timeoutMillis, idempotent, streamCall);
+            }
+        } catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        // 3. 收到响应后检查状态码，取出结果
+        boolean convert = remote && resultType != null;
+        return future.thenApply(response -> {
+            if (response.getCode() == null || response.getCode() != ResponseCodeEnum.SUCCESS.getCode()) {
+                throw new RpcException(response.getCode() == null ? ResponseCodeEnum.FAIL.getCode() : response.getCode(),
+                        "RPC调用失败: " + response.getMessage());
+            }
+            // 远程的服务端流：结果是请求发出时登记的接收端 (进程内调用直接拿到服务端返回的数据流)
+            if (streamCall != null && streamCall.getReceiver() != null) {
+                return (T) streamCall.getReceiver();
+            }
+            if (convert) {
+                // 进程内调用拿到的是原对象 (拷贝模式已经在 InJvmInvoker 里转换过)，只有远程结果需要转换
+                return (T) SerializerFactory.getSerializer(config.getSerializer().getCode())
+                        .convert(response.getData(), resultType);
+            }
+            return (T) response.getData();
+        });
+    }
+
+    /**
+     * 远程调用：服务发现、负载均衡，幂等方法按配置重试或对冲
+     * 流式调用不重试也不对冲：数据流只能消费一次
+     */
+    private CompletableFuture<RpcResponse> invokeRemote(RpcRequest rpcRequest, long timeoutMillis, boolean idempotent,
+                                                        StreamCall streamCall) {
+        // 每个调用都给重试和对冲预算存入令牌，额外请求按调用总数的比例限制
+        retryBudget.deposit();
+        hedgeBudget.deposit();
+
+        // 服务发现：从本地缓存的实例列表里由负载均衡器选一个
+        String serviceKey = rpcRequest.getServiceKey();
+        List<ServiceInstance> instances = serviceRegistry.lookupAll(serviceKey);
+        if (instances.isEmpty()) {
+            throw new RuntimeException("未找到服务地址: " + serviceKey);
+        }
+
+        long deadline = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        Set<ServiceInstance> tried = ConcurrentHashMap.newKeySet();
+        if (streamCall != null) {
+            // 数据流参数不随请求序列化，请求发出后单独发送
+            rpcRequest.setParameters(streamCall.wireParameters(rpcRequest.getParameters()));
+            if (streamCall.isStreamResult()) {
+                rpcRequest.setStreamWindow(streamCall.getWindow());
+            }
+            return send(instances, rpcRequest, deadline, tried, null, streamCall);
+        }
+        if (idempotent && config.getRetries() > 0) {
+            CompletableFuture<RpcResponse> future = new CompletableFuture<>();
+            attempt(future, instances, rpcRequest, deadline, tried, 0);
+            return future;
+        }
+        return sendOnce(instances, rpcRequest, deadline, tried, idempotent);
+    }
+
+    /**
+     * 幂等方法的一次尝试，失败时换一个实例重试
+     * 只重试请求肯定没有执行完的情况：连接失败、连接断开、服务端过载拒绝；超时不重试，截止时间已经用完了
+     * 重试受 retryBudget 限制，服务整体出问题时不会因为重试让流量成倍增加
+     * @param attempt 第几次重试，0 表示第一次发送
+     */
+    private void attempt(CompletableFuture<RpcResponse> result, List<ServiceInstance> instances, RpcRequest rpcRequest,
+                         long deadline, Set<ServiceInstance> tried, int attempt) {
+        CompletableFuture<RpcResponse> future;
+        try {
+            future = sendOnce(instances, rpcRequest, deadline, tried, true);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        if (future == null) {
+            // 实例都试过了
+            result.completeExceptionally(new RpcException(ResponseCodeEnum.FAIL,
+                    "没有可以重试的实例: " + rpcRequest.getServiceKey()));
+            return;
+        }
+
+        future.whenComplete((response, throwable) -> {
+            if (attempt < config.getRetries() && isRetryable(response, throwable)
+                    && (deadline == 0 || deadline - System.nanoTime() > 0)
+                    && tried.size() < instances.size() && retryBudget.tryWithdraw()) {
+                log.warn("调用失败，换实例重试 (第 {} 次): {}#{}, 原因: {}", attempt + 1,
+                        rpcRequest.getInterfaceName(), rpcRequest.getMethodName(),
+                        throwable != null ? throwable.getMessage() : response.getMessage());
+                // 回调可能在 IO 线程上，重试可能要同步建立连接，换个线程发送
+                if (resend(() -> attempt(result, instances, rpcRequest, deadline, tried, attempt + 1))) {
+                    return;
+                }
+                log.warn("重发线程池已满，不再重试: {}#{}", rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+            }
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(response);
+            }
+        });
+    }
+
+    /**
+     * 连接失败、连接断开、在途请求已满、服务端过载拒绝都说明请求没有 (或者不一定) 执行完，可以换实例重试
+     */
+    private static boolean isRetryable(RpcResponse response, Throwable throwable) {
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+            if (cause instanceof CancellationException) {
+                return false;
+            }
+            if (cause instanceof RpcException) {
+                return ((RpcException) cause).getCode() != ResponseCodeEnum.TIMEOUT.getCode();
+            }
+            return true;
+        }
+        return response != null && isOverloaded(response);
+    }
+
+    private static boolean isOverloaded(RpcResponse response) {
+        return Integer.valueOf(ResponseCodeEnum.SERVER_BUSY.getCode()).equals(response.getCode())
+                || Integer.valueOf(ResponseCodeEnum.TOO_MANY_REQUESTS.getCode()).equals(response.getCode());
+    }
+
+    /**
+     * 发送一次 (开启对冲时可能是两路)
+     * @return 响应 Future；没有没试过的实例时返回 null
+     */
+    private CompletableFuture<RpcResponse> sendOnce(List<ServiceInstance> instances, RpcRequest rpcRequest, long deadline,
+                                                    Set<ServiceInstance> tried, boolean idempotent) {
+        if (idempotent && config.isHedging()) {
+            return sendHedged(instances, rpcRequest, deadline, tried);
+        }
+        return send(instances, rpcRequest, deadline, tried, null, null);
+    }
+
+    /**
+     * 选择一个没试过的实例并发送请求
+     * 请求 ID 由连接分配并写回请求对象，每次发送都用一份新的请求，同一个调用的多次发送互不影响
+     * @param deadline  截止时间 (System.nanoTime)，0 表示不限
+     * @param tried     同一个调用已经发过的实例，不会再选；选中的实例会加进去
+     * @param histogram  成功响应的耗时记录到这里，为 null 表示不记录
+     * @param streamCall 流式调用的状态，普通调用为 null
+     * @return 响应 Future；没有没试过的实例时返回 null
+     */
+    private CompletableFuture<RpcResponse> send(List<ServiceInstance> instances, RpcRequest template, long deadline,
+                                                Set<ServiceInstance> tried, LatencyHistogram histogram,
+                                                StreamCall streamCall) {
+        String serviceKey = template.getServiceKey();
+        ServiceInstance instance = null;
+        boolean probe = false;
+        List<ServiceInstance> candidates = instances;
+        if (outlierDetector != null) {
+            // 先去掉被摘除的实例；有实例摘除到期时，这次请求直接发给它作为探测
+            candidates = outlierDetector.filter(serviceKey, instances);
+            if (tried.isEmpty()) {
+                instance = outlierDetector.tryProbe(serviceKey, instances);
+                probe = instance != null;
+            }
+        }
+        if (instance == null) {
+            // 重试和对冲把发过的实例交给负载均衡器排除，候选列表保持原快照，轮询状态和哈希环不会被重置
+            if (!tried.isEmpty() && tried.containsAll(candidates)) {
+                // 没摘除的实例都试过了，再看看被摘除的
+                candidates = instances;
+                if (tried.containsAll(candidates)) {
+                    return null;
+                }
+            }
+            instance = loadBalancer.select(candidates, tried, template, config);
+        }
+        tried.add(instance);
+        log.debug("服务发现成功，负载均衡选择: {}", instance);
+
+        long timeoutMillis = 0;
+        if (deadline != 0) {
+            // 重试和对冲用的是剩下的时间
+            timeoutMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime() + 999_999));
+        }
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setInterfaceName(template.getInterfaceName());
+        rpcRequest.setVersion(template.getVersion());
+        rpcRequest.setGroup(template.getGroup());
+        rpcRequest.setMethodName(template.getMethodName());
+        rpcRequest.setParameters(template.getParameters());
+        rpcRequest.setParamTypes(template.getParamTypes());
+        rpcRequest.setStreamWindow(template.getStreamWindow());
+        if (timeoutMillis > 0) {
+            rpcRequest.setTimeout(timeoutMillis);
+        }
 
         RpcMessage rpcMessage = new RpcMessage();
-        rpcMessage.setCodec(SerializerCodeEnum.JSON.getCode());
+        rpcMessage.setCodec(config.getSerializer().getCode());
+        rpcMessage.setCompress(config.getCompress().getCode());
         rpcMessage.setMessageType(MessageTypeEnum.REQUEST.getType());
-        rpcMessage.setRequestId(rpcRequest.getRequestId());
         rpcMessage.setData(rpcRequest);
 
-        // 2. 服务发现：去 Nacos 查这个接口在哪台机器上
-        InetSocketAddress address = serviceRegistry.lookup(rpcRequest.getInterfaceName());
-        if (address == null) {
-            throw new RuntimeException("未找到服务地址: " + rpcRequest.getInterfaceName());
+        InetSocketAddress address = instance.getAddress();
+        boolean probeRequest = probe;
+        EndpointStats stats = EndpointStats.of(address);
+        long begin = stats.begin();
+        CompletableFuture<RpcResponse> future;
+        try {
+            future = RpcClientFactory.sendRequest(
+                    instance,
+                    rpcMessage,
+                    timeoutMillis,
+                    config,
+                    streamCall
+            );
+        } catch (RuntimeException e) {
+            stats.end(begin);
+            recordResult(address, null, e, begin, probeRequest);
+            throw e;
         }
+        // 无论成功、失败还是超时都记录耗时，供负载均衡参考
+        future.whenComplete((response, throwable) -> {
+            stats.end(begin);
+            recordResult(address, response, throwable, begin, probeRequest);
+            // 被对冲请求抢先而取消的也记录，实际耗时至少这么长，不记的话慢请求越多分位数反而越低
+            if (histogram != null && (response != null || throwable instanceof CancellationException)) {
+                histogram.record(System.nanoTime() - begin);
+            }
+        });
+        return future;
+    }
 
-        CompletableFuture<RpcResponse> future = RpcClientFactory.sendRequest(
-                address.getHostName(),
-                address.getPort(),
-                rpcMessage
-        );
-        RpcResponse response = future.get(); // 阻塞等待
+    /**
+     * 对冲调用
+     * 超过该方法最近耗时的 hedgePercentile 分位还没有响应时，向另一个实例发送同样的请求，
+     * 取先返回的响应，另一路从在途请求表里移除，之后到达的响应直接丢弃
+     * 两路都失败时才失败；耗时样本不足或者只有一个实例时不对冲
+     */
+    private CompletableFuture<RpcResponse> sendHedged(List<ServiceInstance> instances, RpcRequest rpcRequest,
+                                                      long deadline, Set<ServiceInstance> tried) {
+        LatencyHistogram histogram = histograms.computeIfAbsent(
+                rpcRequest.getInterfaceName() + "#" + rpcRequest.getMethodName(),
+                key -> new LatencyHistogram(HEDGE_WINDOW_MILLIS));
+        long delayNanos = histogram.percentileNanos(config.getHedgePercentile(), HEDGE_MIN_SAMPLES);
 
-        if (response.getCode() == null || response.getCode() != 200) {
-            throw new RuntimeException("RPC调用失败: " + response.getMessage());
+        CompletableFuture<RpcResponse> primary = send(instances, rpcRequest, deadline, tried, histogram, null);
+        if (primary == null || delayNanos < 0 || tried.size() >= instances.size()
+                || (deadline != 0 && deadline - System.nanoTime() <= delayNanos)) {
+            return primary;
         }
 
-        return response.getData();
+        CompletableFuture<RpcResponse> result = new CompletableFuture<>();
+        // 还没结束的请求数，减到 0 说明都失败了
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicReference<CompletableFuture<RpcResponse>> hedge = new AtomicReference<>();
+        BiConsumer<RpcResponse, Throwable> onComplete = (response, throwable) -> {
+            if (throwable == null) {
+                result.complete(response);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(throwable);
+            }
+        };
+        primary.whenComplete(onComplete);
+
+        Timeout timer = RpcTimer.newTimeout(t -> resend(() -> {
+            if (result.isDone() || !hedgeBudget.tryWithdraw()) {
+                return;
+            }
+            // 主请求可能刚好失败，这时已经没有在等的请求了，不再对冲
+            int current;
+            do {
+                current = outstanding.get();
+                if (current == 0) {
+                    return;
+                }
+            } while (!outstanding.compareAndSet(current, current + 1));
+
+            CompletableFuture<RpcResponse> future;
+            try {
+                future = send(instances, rpcRequest, deadline, tried, null, null);
+            } catch (RuntimeException e) {
+                onComplete.accept(null, e);
+                return;
+            }
+            if (future == null) {
+                onComplete.accept(null, new RpcException(ResponseCodeEnum.FAIL, "没有可用于对冲的实例"));
+                return;
+            }
+            log.debug("请求超过 {}us 未响应，已对冲到另一个实例: {}#{}", TimeUnit.NANOSECONDS.toMicros(delayNanos),
+                    rpcRequest.getInterfaceName(), rpcRequest.getMethodName());
+            hedge.set(future);
+            future.whenComplete(onComplete);
+            if (result.isDone()) {
+                future.cancel(false);
+            }
+        }), delayNanos, TimeUnit.NANOSECONDS);
+
+        // 任意一路先返回，取消定时器和另一路
+        result.whenComplete((response, throwable) -> {
+            timer.cancel();
+            primary.cancel(false);
+            CompletableFuture<RpcResponse> future = hedge.get();
+            if (future != null) {
+                future.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 提交到重发线程池
+     * @return false 表示线程池已满，任务被拒绝 (没有执行)
+     */
+    private static boolean resend(Runnable task) {
+        try {
+            RESEND_EXECUTOR.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static ThreadPoolExecutor newResendExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(RESEND_THREADS, RESEND_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(RESEND_QUEUE_SIZE), new DefaultThreadFactory("rpc-resend", true),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    /**
+     * 把调用结果交给熔断器
+     * 连接失败、超时、服务端过载拒绝算失败；业务异常说明服务端能正常处理请求，不算失败
+     */
+    private void recordResult(InetSocketAddress address, RpcResponse response, Throwable throwable, long begin, boolean probe) {
+        if (outlierDetector == null) {
+            return;
+        }
+        if (throwable instanceof CancellationException) {
+            // 对冲请求的另一路先返回，这一路是被主动取消的，不代表实例有问题
+            // 探测请求被取消时必须交还探测名额，否则熔断器一直停在半开状态，这个实例再也分不到流量
+            if (probe) {
+                outlierDetector.releaseProbe(address);
+            }
+            return;
+        }
+        boolean success = throwable == null && response != null && !isOverloaded(response);
+        outlierDetector.record(address, success, System.nanoTime() - begin, probe);
+    }
+
+    private boolean isAsync(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return returnType != Object.class && returnType.isAssignableFrom(CompletableFuture.class);
     }
 
     private String[] getParameterTypes(Class<?>[] parameterTypes) {
@@ -0,0 +1,182 @@
+package com.lightrpc.core.server;
+
+import com.lightrpc.core.config.RpcServerConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制 (梯度算法)
+ * 比较最近一小段时间的平均耗时 (短期 RTT) 和长期平均耗时 (长期 RTT)：
+ * 1. 短期 RTT 明显高于长期 RTT，说明请求开始排队，按比例缩小并发上限
+ * 2. 耗时正常时，上限每个窗口增加 sqrt(limit)，逐步探测更高的并发
+ * 超过上限的请求在反序列化之前就被拒绝，服务端饱和时调用方能立即拿到可重试的错误，而不是一起排队变慢
+ */
+@Slf4j
+public class GradientConcurrencyLimiter {
+
+    /**
+     * 允许短期 RTT 比长期 RTT 高出的倍数，超过才认为在排队
+     */
+    private static final double TOLERANCE = 1.5;
+
+    /**
+     * 新上限的平滑系数，避免一个窗口的抖动让上限大起大落
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * 长期 RTT 的 EWMA 窗口 (以采样窗口个数计)
+     */
+    private static final int LONG_WINDOW = 100;
+
+    /**
+     * 每个采样窗口至少包含的请求数
+     */
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    /**
+     * 采样窗口的最短时间
+     */
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 当前并发上限，只在窗口结束时 (持锁) 修改，请求进入时无锁读取
+     */
+    private volatile int limit;
+
+    /**
+     * 窗口结束时计算新上限用的锁，每个请求的采样本身不加锁
+     */
+    private final ReentrantLock windowLock = new ReentrantLock();
+
+    /**
+     * 以下两个字段只在持有 windowLock 时访问
+     */
+    private double estimatedLimit;
+
+    private double longRttNanos;
+
+    private volatile long windowStartNanos = System.nanoTime();
+
+    private final LongAdder windowRttSum = new LongAdder();
+
+    private final LongAdder windowSamples = new LongAdder();
+
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+
+    public GradientConcurrencyLimiter(RpcServerConfig config) {
+        this.minLimit = config.getAdaptiveLimitMin();
+        this.maxLimit = config.getAdaptiveLimitMax();
+        this.limit = config.getAdaptiveLimitInitial();
+        this.estimatedLimit = limit;
+    }
+
+    /**
+     * 尝试获取一个并发许可
+     * @return false 表示已达到上限，请求应被拒绝
+     */
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求处理完成，归还许可并记录耗时
+     * @param startNanos 获取许可时的 System.nanoTime()
+     */
+    public void release(long startNanos) {
+        int current = inFlight.getAndDecrement();
+        sample(System.nanoTime() - startNanos, current);
+    }
+
+    /**
+     * 请求没有真正执行 (例如被线程池拒绝)，只归还许可，不计入耗时
+     */
+    public void releaseWithoutSample() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 记录一次耗时，每个请求都会调用，只做无锁累加
+     * 窗口到期时由一个线程 (tryLock 成功的那个) 结算，其它线程不等待
+     */
+    private void sample(long rttNanos, int currentInFlight) {
+        windowRttSum.add(rttNanos);
+        windowSamples.increment();
+        if (windowMaxInFlight.get() < currentInFlight) {
+            windowMaxInFlight.accumulateAndGet(currentInFlight, Math::max);
+        }
+
+        long now = System.nanoTime();
+        if (now - windowStartNanos < MIN_WINDOW_NANOS || windowSamples.sum() < MIN_WINDOW_SAMPLES
+                || !windowLock.tryLock()) {
+            return;
+        }
+        try {
+            // 拿到锁之前可能已经被别的线程结算过
+            if (now - windowStartNanos < MIN_WINDOW_NANOS) {
+                return;
+            }
+            windowStartNanos = now;
+            // 结算期间并发加进来的采样可能一半算进这个窗口、一半留给下个窗口，对平均值影响可以忽略
+            long samples = windowSamples.sumThenReset();
+            long rttSum = windowRttSum.sumThenReset();
+            int maxInFlight = windowMaxInFlight.getAndSet(0);
+            if (samples > 0) {
+                update((double) rttSum / samples, maxInFlight);
+            }
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    private void update(double shortRtt, int maxInFlight) {
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else {
+            longRttNanos += (shortRtt - longRttNanos) / LONG_WINDOW;
+        }
+        // 负载下降后长期 RTT 还停在高位，会让上限一直往上涨，这里让它加快回落
+        if (longRttNanos / shortRtt > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // 实际并发还不到上限的一半，说明没压满，这时的耗时不能说明上限该不该提高
+        if (maxInFlight * 2 < estimatedLimit) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        int rounded = (int) estimatedLimit;
+        if (rounded != limit) {
+            log.debug("【服务端】并发上限调整: {} -> {}, 短期 RTT: {}us, 长期 RTT: {}us",
+                    limit, rounded, (long) shortRtt / 1000, (long) longRttNanos / 1000);
+            limit = rounded;
+        }
+    }
+}
@@ -1,16 +1,106 @@
 package com.lightrpc.core.server;
 
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.util.ServiceKeyUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 服务端本地注册表
+ * 以服务标识 (接口:版本:分组) 为 Key，同一接口的不同版本可以同时发布
+ */
+@Slf4j
 public class LocalRegistry {
     private static final Map<String, Object> serviceMap = new ConcurrentHashMap<>();
 
+    /**
+     * 方法调用器表：服务标识 -> 方法名 -> 同名的重载方法
+     * 查找时按参数类型数组逐个比较，请求处理时不需要拼接字符串
+     */
+    private static final Map<String, Map<String, MethodInvoker[]>> invokerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 以默认版本、不分组发布服务
+     */
     public static void register(String interfaceName, Object serviceBean) {
-        serviceMap.put(interfaceName, serviceBean);
+        register(interfaceName, RpcConstants.DEFAULT_VERSION, RpcConstants.DEFAULT_GROUP, serviceBean);
+    }
+
+    public static void register(String interfaceName, String version, String group, Object serviceBean) {
+        String serviceKey = ServiceKeyUtil.build(interfaceName, version, group);
+        serviceMap.put(serviceKey, serviceBean);
+
+        // 发布时一次性生成所有方法的调用器，请求处理时只需要查表
+        Map<String, List<MethodInvoker>> overloads = new HashMap<>();
+        for (Method method : resolveMethods(interfaceName, serviceBean)) {
+            try {
+                overloads.computeIfAbsent(method.getName(), name -> new ArrayList<>())
+                        .add(new MethodInvoker(serviceBean, method));
+            } catch (IllegalAccessException e) {
+                log.warn("服务 [{}] 的方法 [{}] 无法访问，已跳过", interfaceName, method, e);
+            }
+        }
+        Map<String, MethodInvoker[]> methods = new HashMap<>();
+        overloads.forEach((name, invokers) -> methods.put(name, invokers.toArray(new MethodInvoker[0])));
+        invokerMap.put(serviceKey, methods);
+    }
+
+    /**
+     * 移除服务 (服务端停机时调用)，之后的进程内直连调用找不到它，改走远程调用
+     * @param serviceKey 服务标识，见 ServiceKeyUtil
+     */
+    public static void unregister(String serviceKey) {
+        invokerMap.remove(serviceKey);
+        serviceMap.remove(serviceKey);
+    }
+
+    /**
+     * @param serviceKey 服务标识，见 ServiceKeyUtil
+     */
+    public static Object get(String serviceKey) {
+        return serviceMap.get(serviceKey);
+    }
+
+    /**
+     * @param serviceKey 服务标识，见 ServiceKeyUtil
+     */
+    public static MethodInvoker getInvoker(String serviceKey, String methodName, String[] paramTypes) {
+        Map<String, MethodInvoker[]> methods = invokerMap.get(serviceKey);
+        MethodInvoker[] overloads = methods == null ? null : methods.get(methodName);
+        if (overloads == null) {
+            return null;
+        }
+        for (MethodInvoker invoker : overloads) {
+            if (invoker.matches(paramTypes)) {
+                return invoker;
+            }
+        }
+        return null;
     }
 
-    public static Object get(String interfaceName) {
-        return serviceMap.get(interfaceName);
+    /**
+     * 优先使用接口上声明的方法 (只暴露接口方法，且实现类不是 public 时也能调用)
+     * 接口类加载不到时，退回到实现类的全部 public 方法
+     */
+    private static Method[] resolveMethods(String interfaceName, Object serviceBean) {
+        try {
+            Class<?> interfaceClass = Class.forName(interfaceName, false, serviceBean.getClass().getClassLoader());
+            if (interfaceClass.isInstance(serviceBean)) {
+                return interfaceClass.getMethods();
+            }
+        } catch (ClassNotFoundException e) {
+            log.warn("未找到服务接口 [{}]，将发布实现类的全部 public 方法", interfaceName);
+        }
+        if (!Modifier.isPublic(serviceBean.getClass().getModifiers())) {
+            log.warn("服务实现类 [{}] 不是 public 的，可能无法调用", serviceBean.getClass().getName());
+        }
+        return serviceBean.getClass().getMethods();
     }
 }
@@ -0,0 +1,151 @@
+package com.lightrpc.core.server;
+
+import com.lightrpc.api.stream.RpcStream;
+import com.lightrpc.common.serializer.Serializer;
+import com.lightrpc.core.annotation.LightRpcMethod;
+import com.lightrpc.core.stream.StreamCall;
+import lombok.Getter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+
+/**
+ * 预编译好的方法调用器
+ * 发布服务时为每个方法生成一次，请求到来时直接调用，不再有 Class.forName / getMethod / Method.invoke
+ */
+public class MethodInvoker {
+
+    /**
+     * 已经绑定了服务实例、并展开参数数组的 MethodHandle，签名统一为 (Object[])Object
+     */
+    private final MethodHandle handle;
+
+    @Getter
+    private final Method method;
+
+    /**
+     * 参数的声明类型 (包含泛型)，用来转换反序列化出来的参数
+     */
+    private final Type[] parameterTypes;
+
+    /**
+     * 参数类型的全类名，和请求里的 paramTypes 比较
+     */
+    private final String[] paramTypeNames;
+
+    /**
+     * 结果的声明类型 (异步方法是 Future 里的类型)，用来转换反序列化出来的结果
+     */
+    @Getter
+    private final Type resultType;
+
+    /**
+     * 是否直接在 IO 线程上执行 (实现类方法上标注了 @LightRpcMethod(ioThread = true))
+     */
+    @Getter
+    private final boolean ioThread;
+
+    /**
+     * RpcStream 参数的位置 (客户端流)，没有时为 -1
+     */
+    @Getter
+    private final int streamParameter;
+
+    /**
+     * 返回值是否是 RpcStream (服务端流)
+     */
+    @Getter
+    private final boolean streamResult;
+
+    MethodInvoker(Object serviceBean, Method method) throws IllegalAccessException {
+        this.method = method;
+        this.parameterTypes = method.getGenericParameterTypes();
+        Class<?>[] rawTypes = method.getParameterTypes();
+        this.paramTypeNames = new String[rawTypes.length];
+        for (int i = 0; i < rawTypes.length; i++) {
+            paramTypeNames[i] = rawTypes[i].getName();
+        }
+        this.resultType = resultType(method);
+        this.ioThread = isIoThread(serviceBean, method);
+        this.streamParameter = StreamCall.streamParameter(method);
+        this.streamResult = RpcStream.class.isAssignableFrom(method.getReturnType());
+        this.handle = MethodHandles.publicLookup()
+                .unreflect(method)
+                .bindTo(serviceBean)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    /**
+     * 是否是流式方法 (有 RpcStream 参数或者返回 RpcStream)
+     */
+    public boolean isStreaming() {
+        return streamParameter >= 0 || streamResult;
+    }
+
+    private static boolean isIoThread(Object serviceBean, Method method) {
+        try {
+            // 注解写在实现类上，接口方法上拿不到
+            LightRpcMethod annotation = serviceBean.getClass()
+                    .getMethod(method.getName(), method.getParameterTypes())
+                    .getAnnotation(LightRpcMethod.class);
+            return annotation != null && annotation.ioThread();
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 按参数的声明类型转换反序列化出来的参数 (原地替换)
+     * JSON 把 Object[] 里的 int 解析成 Double、把对象解析成 Map，不转换的话调用时类型不匹配
+     */
+    public void convertParameters(Object[] parameters, Serializer serializer) {
+        if (parameters == null) {
+            return;
+        }
+        int count = Math.min(parameters.length, parameterTypes.length);
+        for (int i = 0; i < count; i++) {
+            parameters[i] = serializer.convert(parameters[i], parameterTypes[i]);
+        }
+    }
+
+    /**
+     * 调用服务方法，业务异常原样抛出
+     */
+    public Object invoke(Object[] parameters) throws Throwable {
+        return handle.invokeExact(parameters);
+    }
+
+    /**
+     * 方法结果的声明类型：返回 CompletableFuture / CompletionStage 的异步方法取 Future 里的类型
+     * 没有声明类型参数时为 Object
+     */
+    public static Type resultType(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (!CompletionStage.class.isAssignableFrom(returnType) && returnType != Future.class) {
+            return method.getGenericReturnType();
+        }
+        Type genericType = method.getGenericReturnType();
+        if (genericType instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (argument instanceof Class || argument instanceof ParameterizedType) {
+                return argument;
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * 请求里的参数类型 (全类名) 是否和这个方法一致，用来在重载方法中选择
+     */
+    boolean matches(String[] paramTypes) {
+        return paramTypes == null ? paramTypeNames.length == 0 : Arrays.equals(paramTypeNames, paramTypes);
+    }
+}
@@ -0,0 +1,74 @@
+package com.lightrpc.core.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端在途请求计数，用于优雅停机
+ * 关闭后新请求不再进入，停机流程等在途请求都处理完再关闭连接
+ */
+public class RequestGate {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * 请求开始处理
+     * @return false 表示服务端正在停机，请求应被拒绝
+     */
+    public boolean tryEnter() {
+        if (closed) {
+            return false;
+        }
+        inFlight.incrementAndGet();
+        // 计数和关闭之间有竞争，关闭之后进来的请求退回去
+        if (closed) {
+            exit();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求处理结束 (响应已经交给 IO 线程写出)
+     */
+    public void exit() {
+        if (inFlight.decrementAndGet() == 0 && closed) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 不再接受新请求
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 等待在途请求处理完
+     * @return false 表示超时后还有请求没处理完
+     */
+    public synchronized boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (inFlight.get() > 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
@@ -1,21 +1,39 @@
 package com.lightrpc.core.server;
 
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.util.ServiceKeyUtil;
+import com.lightrpc.core.codec.ChunkWriter;
 import com.lightrpc.core.codec.RpcMessageDecoder;
 import com.lightrpc.core.codec.RpcMessageEncoder;
+import com.lightrpc.core.config.RpcServerConfig;
+import com.lightrpc.core.metrics.FlushMetricsHandler;
+import com.lightrpc.core.transport.LocalEndpoints;
+import com.lightrpc.core.transport.Transport;
+import com.lightrpc.registry.ServiceInstance;
 import com.lightrpc.registry.ServiceRegistry;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 public class RpcServer {
@@ -24,45 +42,112 @@ public class RpcServer {
     private final int port;
     // 注册中心实现类
     private final ServiceRegistry serviceRegistry;
+    private final RpcServerConfig config;
+    // IO 模型：Linux 上优先 native epoll，不可用时退回 NIO
+    private final Transport transport;
+    // 同机传输：Unix Domain Socket 路径和 LocalChannel 名称，没有开启时为 null
+    private final String domainSocketPath;
+    private final String localChannelName;
+    // 所有连接共享的写出统计
+    private final FlushMetricsHandler flushMetrics = new FlushMetricsHandler();
+    // 所有连接共享的在途请求计数，停机时用
+    private final RequestGate gate = new RequestGate();
+    // 已经注册到注册中心的服务标识，停机时逐个注销
+    private final Set<String> registeredServices = ConcurrentHashMap.newKeySet();
+    // 发布到 LocalRegistry 的服务标识，停机时移除，进程内直连调用不再找到它们
+    private final Set<String> publishedServices = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+    // 监听端口的 Channel，start 成功后才有
+    private volatile Channel serverChannel;
+    // 额外监听的 UDS / LocalChannel
+    private final List<Channel> localServerChannels = new CopyOnWriteArrayList<>();
 
     public RpcServer(String host, int port, ServiceRegistry serviceRegistry) {
+        this(host, port, serviceRegistry, new RpcServerConfig());
+    }
+
+    public RpcServer(String host, int port, ServiceRegistry serviceRegistry, RpcServerConfig config) {
         this.host = host;
         this.port = port;
         this.serviceRegistry = serviceRegistry;
+        this.config = config;
+        this.transport = Transport.select(config.getTransport());
+        String path = config.getDomainSocketPath();
+        if (path != null && !path.isEmpty() && !transport.supportsDomainSocket()) {
+            log.warn("传输实现 {} 不支持 Unix Domain Socket，忽略 domainSocketPath: {}", transport, path);
+            path = null;
+        }
+        this.domainSocketPath = path == null || path.isEmpty() ? null : path;
+        // TCP 端口在本机唯一，LocalChannel 名称跟着端口走
+        this.localChannelName = config.isLocalChannel() ? "light-rpc-" + host + ":" + port : null;
+    }
+
+    /**
+     * 以默认版本、不分组发布服务
+     */
+    public <T> void publishService(String serviceName, Object serviceBean) {
+        publishService(serviceName, RpcConstants.DEFAULT_VERSION, RpcConstants.DEFAULT_GROUP, serviceBean);
     }
 
     /**
      * 发布服务的方法
      * 1. 注册到本地 LocalRegistry (供 ServerHandler 反射调用)
      * 2. 注册到 Nacos (供 Client 发现)
+     * 注册中心里的服务名是服务标识 (接口:版本:分组)，客户端只会发现版本和分组都匹配的实例
+     * 开启了同机传输时，UDS 路径和 LocalChannel 名称写进实例元数据
      */
-    public <T> void publishService(String serviceName, Object serviceBean) {
+    public void publishService(String interfaceName, String version, String group, Object serviceBean) {
         // 1. 本地注册
-        LocalRegistry.register(serviceName, serviceBean);
+        LocalRegistry.register(interfaceName, version, group, serviceBean);
+        publishedServices.add(ServiceKeyUtil.build(interfaceName, version, group));
 
         // 2. 远程注册 (把本机 IP 和端口告诉 Nacos)
         if (serviceRegistry != null) {
-            serviceRegistry.register(serviceName, new InetSocketAddress(host, port));
+            String serviceKey = ServiceKeyUtil.build(interfaceName, version, group);
+            serviceRegistry.register(serviceKey, new InetSocketAddress(host, port), localMetadata());
+            registeredServices.add(serviceKey);
+        }
+    }
+
+    private Map<String, String> localMetadata() {
+        Map<String, String> metadata = new HashMap<>();
+        if (domainSocketPath != null) {
+            metadata.put(ServiceInstance.METADATA_UDS_PATH, new File(domainSocketPath).getAbsolutePath());
+        }
+        if (localChannelName != null) {
+            metadata.put(ServiceInstance.METADATA_LOCAL_CHANNEL, localChannelName);
         }
+        return metadata;
+    }
+
+    /**
+     * 服务端写出统计 (所有连接合计)
+     */
+    public FlushMetricsHandler getFlushMetrics() {
+        return flushMetrics;
     }
 
     public void start() {
         // 1. 创建 Boss 线程组：只负责处理“连接请求”
-        // 这里的参数 1 表示只用 1 个线程去监听端口（对于服务端通常足够了）
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+        // 默认只用 1 个线程去监听端口（对于服务端通常足够了）
+        EventLoopGroup bossGroup = transport.newEventLoopGroup(config.getBossThreads(), "rpc-server-boss", false);
 
-        // 2. 创建 Worker 线程组：负责具体的“IO 读写”和“业务处理”
+        // 2. 创建 Worker 线程组：负责具体的“IO 读写”
         // 默认线程数是 CPU 核数 * 2
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        EventLoopGroup workerGroup = transport.newEventLoopGroup(config.getWorkerThreads(), "rpc-server-worker", false);
+
+        // 业务派发器：所有连接共享，服务方法在业务线程池上执行
+        ServiceDispatcher dispatcher = new ServiceDispatcher(config);
+        // 自适应并发限制：所有连接共享一个上限
+        GradientConcurrencyLimiter limiter = config.isAdaptiveLimit() ? new GradientConcurrencyLimiter(config) : null;
 
         try {
             // 3. 创建服务端启动助手
             ServerBootstrap serverBootstrap = new ServerBootstrap();
 
             // 4. 配置启动参数
+            // Channel 类型在绑定时才指定，TCP、UDS、LocalChannel 复用同一份配置
             serverBootstrap.group(bossGroup, workerGroup)
-                    // 指定 IO 模型为 NIO (Non-blocking IO)
-                    .channel(NioServerSocketChannel.class)
                     // TCP 参数：SO_BACKLOG - 握手请求的队列大小
                     // 如果同时来了 1000 个连接，先放在队列里排队，队列满了就拒绝
                     .option(ChannelOption.SO_BACKLOG, 1024)
@@ -74,17 +159,31 @@ public class RpcServer {
                     .childOption(ChannelOption.TCP_NODELAY, true)
 
                     // 5. 初始化 Pipeline (流水线)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                    // TCP、UDS、LocalChannel 共用同一套 Pipeline
+                    .childHandler(new ChannelInitializer<Channel>() {
                         @Override
-                        protected void initChannel(SocketChannel ch) {
+                        protected void initChannel(Channel ch) {
                             // 添加入站和出站的 Handler
                             // 顺序非常重要！
 
+                            // 写出统计放在最前面，统计的是合并之后真正的 flush 次数
+                            ch.pipeline().addLast(flushMetrics);
+                            if (config.isFlushConsolidation()) {
+                                // 读事件处理期间以及业务线程写回的响应，合并成一次 flush
+                                ch.pipeline().addLast(new FlushConsolidationHandler(config.getFlushConsolidationLimit(), true));
+                            }
+
+                            // 大响应拆成分片，和其它响应交错写出
+                            if (config.getChunkSize() > 0) {
+                                ch.pipeline().addLast(new ChunkWriter(config.getChunkSize()));
+                            }
+
                             // 编码器 (Outbound): 发送数据时，把对象变成字节
-                            ch.pipeline().addLast(new RpcMessageEncoder());
+                            ch.pipeline().addLast(new RpcMessageEncoder(config.getCompressThreshold()));
 
-                            // 解码器 (Inbound): 接收数据时，把字节变成对象 (处理粘包)
-                            ch.pipeline().addLast(new RpcMessageDecoder());
+                            // 解码器 (Inbound): 接收数据时，把字节变成对象 (处理粘包，拼接分片)
+                            // 请求体延迟到限流检查之后再反序列化
+                            ch.pipeline().addLast(new RpcMessageDecoder(true, config.getMaxChunkedBytes()));
 
                             // 空闲检测
                             // 参数：(读空闲时间, 写空闲时间, 读写空闲时间, 单位)
@@ -92,30 +191,142 @@ public class RpcServer {
                             ch.pipeline().addLast(new IdleStateHandler(10, 0, 0, TimeUnit.SECONDS));
 
                             // 业务处理器 (Inbound): 真正的 RPC 业务逻辑
-                            ch.pipeline().addLast(new RpcServerHandler());
+                            ch.pipeline().addLast(new RpcServerHandler(dispatcher, limiter, gate, config.getStreamWindow()));
                         }
                     });
 
             // 6. 绑定端口，同步等待绑定成功
             // sync() 会阻塞当前线程，直到绑定完成
-            ChannelFuture channelFuture = serverBootstrap.bind(new InetSocketAddress(host, port)).sync();
+            // 指定 IO 模型 (NIO / epoll / io_uring)
+            ChannelFuture channelFuture = serverBootstrap.clone()
+                    .channel(transport.getServerChannelClass())
+                    .bind(new InetSocketAddress(host, port)).sync();
+            serverChannel = channelFuture.channel();
 
-            log.info("【服务端】启动成功，监听地址: {}:{}", host, port);
+            log.info("【服务端】启动成功，监听地址: {}:{}，传输实现: {}", host, port, transport);
+            bindLocal(serverBootstrap);
 
             // 7. 等待服务端监听端口关闭
             // 这行代码会让主线程阻塞在这里，不会让程序运行完就直接退出
-            // 只有当 channel 关闭时（比如 server 被 stop），这行代码才会放行
+            // 只有当 channel 关闭时（比如调用了 shutdown），这行代码才会放行
             channelFuture.channel().closeFuture().sync();
 
         } catch (InterruptedException e) {
             log.error("服务端启动时发生异常", e);
             Thread.currentThread().interrupt();
         } finally {
-            // 8. 优雅停机
+            // 8. 释放线程资源
             // 无论发生什么异常，或者 server 关闭，都要正确释放线程资源
+            // 走到这里时 shutdown 已经等在途请求处理完了，IO 线程在安静期内会把最后的响应写出去
             log.info("服务端正在关闭...");
+            closeLocal();
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * 额外监听 UDS 和 LocalChannel，失败时只打印警告，客户端会继续走 TCP
+     * TCP 专用的参数 (SO_KEEPALIVE、TCP_NODELAY) 在这两种 Channel 上不支持，要去掉
+     */
+    private void bindLocal(ServerBootstrap serverBootstrap) throws InterruptedException {
+        if (domainSocketPath != null) {
+            // 上次异常退出留下的 Socket 文件会导致绑定失败
+            File file = new File(domainSocketPath);
+            if (file.exists() && !file.delete()) {
+                log.warn("无法删除旧的 Socket 文件: {}", file);
+            }
+            ChannelFuture future = serverBootstrap.clone()
+                    .channel(transport.getDomainServerChannelClass())
+                    .childOption(ChannelOption.SO_KEEPALIVE, null)
+                    .childOption(ChannelOption.TCP_NODELAY, null)
+                    .bind(new DomainSocketAddress(file.getAbsolutePath())).await();
+            if (future.isSuccess()) {
+                localServerChannels.add(future.channel());
+                log.info("【服务端】监听 Unix Domain Socket: {}", file.getAbsolutePath());
+            } else {
+                log.warn("监听 Unix Domain Socket 失败: {}", file.getAbsolutePath(), future.cause());
+            }
+        }
+        if (localChannelName != null) {
+            ChannelFuture future = serverBootstrap.clone()
+                    .channel(LocalServerChannel.class)
+                    .option(ChannelOption.SO_BACKLOG, null)
+                    .childOption(ChannelOption.SO_KEEPALIVE, null)
+                    .childOption(ChannelOption.TCP_NODELAY, null)
+                    .bind(new LocalAddress(localChannelName)).await();
+            if (future.isSuccess()) {
+                localServerChannels.add(future.channel());
+                LocalEndpoints.bindLocalChannel(localChannelName);
+                log.info("【服务端】绑定 LocalChannel: {}", localChannelName);
+            } else {
+                log.warn("绑定 LocalChannel 失败: {}", localChannelName, future.cause());
+            }
+        }
+    }
+
+    /**
+     * 关闭 UDS 和 LocalChannel 监听 (UDS 的 Socket 文件由 Netty 在关闭时删除)
+     */
+    private void closeLocal() {
+        if (localChannelName != null) {
+            LocalEndpoints.unbindLocalChannel(localChannelName);
+        }
+        for (Channel channel : localServerChannels) {
+            channel.close().syncUninterruptibly();
+        }
+        localServerChannels.clear();
+    }
+
+    /**
+     * 优雅停机
+     * 1. 从注册中心注销，客户端收到通知后不再发来新请求；从本地注册表移除，同一 JVM 里的调用方改走远程调用
+     * 2. 等待 shutdownWaitMillis，客户端收到通知之前发来的请求照常处理
+     * 3. 之后到达的请求直接返回 SERVER_BUSY (没有执行，客户端可以安全地换实例重试)
+     * 4. 等在途请求处理完，最多 shutdownTimeoutMillis
+     * 5. 关闭监听端口，start 返回并释放线程
+     * 可以重复调用，只有第一次生效
+     */
+    public void shutdown() {
+        if (!shuttingDown.compareAndSet(false, true)) {
+            return;
+        }
+        log.info("服务端开始优雅停机: {}:{}", host, port);
+
+        // 进程内直连调用不经过 RequestGate，本地注册表里的服务不移除的话，停机之后还会被直接调用
+        for (String serviceKey : publishedServices) {
+            LocalRegistry.unregister(serviceKey);
+        }
+
+        if (serviceRegistry != null) {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            for (String serviceKey : registeredServices) {
+                try {
+                    serviceRegistry.deregister(serviceKey, address);
+                } catch (Exception e) {
+                    log.warn("服务注销失败: {}", serviceKey, e);
+                }
+            }
+        }
+
+        try {
+            if (!registeredServices.isEmpty() && config.getShutdownWaitMillis() > 0) {
+                Thread.sleep(config.getShutdownWaitMillis());
+            }
+            gate.close();
+            if (!gate.awaitDrained(config.getShutdownTimeoutMillis())) {
+                log.warn("等待在途请求超时，还有 {} 个请求未完成，强制关闭", gate.getInFlight());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        closeLocal();
+        Channel channel = serverChannel;
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
         }
+        log.info("服务端已停止接收请求: {}:{}", host, port);
     }
 }
\ No newline at end of file
@@ -1,24 +1,75 @@
 package com.lightrpc.core.server;
 
 import com.lightrpc.common.enums.MessageTypeEnum;
+import com.lightrpc.common.enums.ResponseCodeEnum;
 import com.lightrpc.common.model.RpcMessage;
 import com.lightrpc.common.model.RpcRequest;
 import com.lightrpc.common.model.RpcResponse;
+import com.lightrpc.common.serializer.SerializerFactory;
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.exception.RpcException;
+import com.lightrpc.core.codec.ChunkDiscardedEvent;
+import com.lightrpc.core.codec.RequestBody;
+import com.lightrpc.core.stream.StreamReceiver;
+import com.lightrpc.core.stream.StreamTable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Iterator;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 public class RpcServerHandler extends SimpleChannelInboundHandler<RpcMessage> {
 
+    private final ServiceDispatcher dispatcher;
+
+    /**
+     * 自适应并发限制，未开启时为 null (所有连接共享一个)
+     */
+    private final GradientConcurrencyLimiter limiter;
+
+    /**
+     * 在途请求计数，停机时据此等待请求处理完 (所有连接共享一个)
+     */
+    private final RequestGate gate;
+
+    /**
+     * 客户端流的接收额度
+     */
+    private final int streamWindow;
+
+    /**
+     * 这个连接上进行中的数据流
+     */
+    private final StreamTable streams = new StreamTable();
+
+    public RpcServerHandler(ServiceDispatcher dispatcher) {
+        this(dispatcher, null, new RequestGate());
+    }
+
+    public RpcServerHandler(ServiceDispatcher dispatcher, GradientConcurrencyLimiter limiter, RequestGate gate) {
+        this(dispatcher, limiter, gate, RpcConstants.DEFAULT_STREAM_WINDOW);
+    }
+
+    public RpcServerHandler(ServiceDispatcher dispatcher, GradientConcurrencyLimiter limiter, RequestGate gate,
+                            int streamWindow) {
+        this.dispatcher = dispatcher;
+        this.limiter = limiter;
+        this.gate = gate;
+        this.streamWindow = streamWindow;
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcMessage msg) throws Exception {
         // 如果能打印出这个日志，说明：
         // 1. 数据从网卡进来了
         // 2. LengthFieldBasedFrameDecoder 解决了粘包
-        // 3. RpcMessageDecoder 反序列化成功了
+        // 3. RpcMessageDecoder 解析协议头成功了 (请求体稍后再反序列化)
         log.info("【服务端】接收到消息: {}", msg);
 
         // 如果是心跳包
@@ -26,57 +77,271 @@ public class RpcServerHandler extends SimpleChannelInboundHandler<RpcMessage> {
             log.info("【服务端】接收到客户端心跳 Ping: {}", ctx.channel().remoteAddress());
             return; // 心跳包直接返回，不走下面的业务逻辑
         }
+        // 进行中的调用的数据流消息，调用本身已经计入在途请求，这里不再检查
+        if (MessageTypeEnum.isStream(msg.getMessageType())) {
+            streams.onFrame(msg);
+            return;
+        }
+        long receivedNanos = System.nanoTime();
 
-        // 1. 获取 msg 中的 RpcRequest
-        RpcRequest request = (RpcRequest) msg.getData();
-        
-        RpcResponse response = new RpcResponse();
-        response.setRequestId(request.getRequestId());
-        
+        // 0. 服务端正在停机，或者并发超过上限，直接拒绝，此时只解析了协议头，请求体不解压也不反序列化
+        ResponseCodeEnum rejection = null;
+        String reason = null;
+        if (!gate.tryEnter()) {
+            rejection = ResponseCodeEnum.SERVER_BUSY;
+            reason = "服务端正在关闭";
+        } else if (limiter != null && !limiter.tryAcquire()) {
+            gate.exit();
+            rejection = ResponseCodeEnum.TOO_MANY_REQUESTS;
+            reason = ResponseCodeEnum.TOO_MANY_REQUESTS.getMessage();
+        }
+        if (rejection != null) {
+            if (msg.getData() instanceof RequestBody) {
+                ((RequestBody) msg.getData()).release();
+            }
+            log.warn("【服务端】拒绝请求: {}, 原因: {}", msg.getRequestId(), reason);
+            // 请求没有执行，客户端可以安全地换实例重试
+            sendResponse(ctx, msg, buildResponse(msg.getRequestId(), rejection, reason));
+            return;
+        }
+
+        boolean dispatched = false;
+        StreamReceiver<?> argumentStream = null;
         try {
-            // 2. 获取服务实现类
-            Object service = LocalRegistry.get(request.getInterfaceName());
-            if (service == null) {
-                throw new RuntimeException("未找到服务: " + request.getInterfaceName());
+            // 1. 获取 msg 中的 RpcRequest
+            // 请求体在这里才反序列化，失败时只让这个请求失败，不能走 exceptionCaught 把整个连接关掉
+            // 仍然在 IO 线程上反序列化，不要挪到业务线程：解压和反序列化的缓冲区是 IO 线程复用的
+            RpcRequest request;
+            try {
+                request = msg.getData() instanceof RequestBody
+                        ? ((RequestBody) msg.getData()).decode()
+                        : (RpcRequest) msg.getData();
+            } catch (Exception e) {
+                log.error("【服务端】请求反序列化失败, requestId: {}", msg.getRequestId(), e);
+                sendResponse(ctx, msg, buildResponse(msg.getRequestId(), ResponseCodeEnum.FAIL,
+                        "Fail: 请求反序列化失败: " + e.getMessage()));
+                return;
+            }
+            // 从收到请求开始计算截止时间，排队的时间也算在里面
+            long deadline = request.getTimeout() != null && request.getTimeout() > 0
+                    ? receivedNanos + TimeUnit.MILLISECONDS.toNanos(request.getTimeout())
+                    : 0;
+
+            // 2. 查找发布服务时预先生成的方法调用器
+            String serviceKey = request.getServiceKey();
+            MethodInvoker invoker = LocalRegistry.getInvoker(serviceKey, request.getMethodName(), request.getParamTypes());
+            if (invoker == null) {
+                log.error("未找到服务方法: {}#{}", serviceKey, request.getMethodName());
+                sendResponse(ctx, msg, buildResponse(request, ResponseCodeEnum.FAIL,
+                        "Fail: 未找到服务方法: " + serviceKey + "#" + request.getMethodName()));
+                return;
+            }
+
+            // 按方法的参数类型转换参数 (JSON 丢失了数字和对象的类型)
+            try {
+                invoker.convertParameters(request.getParameters(), SerializerFactory.getSerializer(msg.getCodec()));
+            } catch (RuntimeException e) {
+                log.error("【服务端】参数类型转换失败: {}#{}", serviceKey, request.getMethodName(), e);
+                sendResponse(ctx, msg, buildResponse(request, ResponseCodeEnum.FAIL, "Fail: 参数类型转换失败: " + e.getMessage()));
+                return;
             }
-            
-            // 处理参数类型
-            Class<?>[] parameterTypes = new Class[request.getParamTypes().length];
-            for (int i = 0; i < request.getParamTypes().length; i++) {
-                parameterTypes[i] = Class.forName(request.getParamTypes()[i]);
+
+            // 客户端流：请求里这个参数是 null，换成接收端，并告诉客户端可以开始发送
+            if (invoker.getStreamParameter() >= 0) {
+                argumentStream = streams.openReceiver(ctx.channel(), msg.getRequestId(), msg.getCodec(), msg.getCompress(),
+                        streamWindow);
+                request.getParameters()[invoker.getStreamParameter()] = argumentStream;
+                argumentStream.grant(argumentStream.getWindow());
+            }
+
+            // 3. 派发到业务线程执行，不阻塞 IO 线程上的其它连接
+            StreamReceiver<?> arguments = argumentStream;
+            dispatched = dispatcher.dispatch(request.getInterfaceName(), invoker,
+                    () -> invoke(ctx, msg, request, invoker, deadline, receivedNanos, arguments));
+            if (!dispatched) {
+                // 线程池已满，快速失败，不再排队
+                log.warn("【服务端】业务线程池已满，拒绝请求: {}#{}", request.getInterfaceName(), request.getMethodName());
+                sendResponse(ctx, msg, buildResponse(request, ResponseCodeEnum.SERVER_BUSY, ResponseCodeEnum.SERVER_BUSY.getMessage()));
+            }
+        } finally {
+            // 没有进入业务执行的请求 (找不到方法、线程池已满、反序列化失败) 只归还许可，不计入耗时
+            if (!dispatched) {
+                if (argumentStream != null) {
+                    argumentStream.close();
+                }
+                if (limiter != null) {
+                    limiter.releaseWithoutSample();
+                }
+                gate.exit();
+            }
+        }
+    }
+
+    /**
+     * 调用真实服务 (在业务线程上执行)
+     * @param deadline      截止时间 (System.nanoTime)，0 表示不限
+     * @param receivedNanos 收到请求的时间，请求结束时用来计算耗时
+     * @param arguments     客户端流的接收端，没有时为 null
+     */
+    private void invoke(ChannelHandlerContext ctx, RpcMessage msg, RpcRequest request, MethodInvoker invoker,
+                        long deadline, long receivedNanos, StreamReceiver<?> arguments) {
+        // 在队列里等到过期的请求，客户端已经放弃等待，执行了也没人要结果，直接丢弃
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            log.warn("【服务端】请求已超时，丢弃: {}#{}, requestId: {}",
+                    request.getInterfaceName(), request.getMethodName(), request.getRequestId());
+            closeQuietly(arguments);
+            finish(receivedNanos);
+            return;
+        }
+
+        Object result;
+        try {
+            result = invoker.invoke(request.getParameters());
+        } catch (Throwable e) {
+            closeQuietly(arguments);
+            complete(ctx, msg, failResponse(request, e), receivedNanos);
+            return;
+        }
+
+        // 服务端流：先回复调用成功，再按客户端给的额度逐个发送元素，发完才算请求结束
+        if (invoker.isStreamResult()) {
+            if (!(result instanceof Iterator)) {
+                closeQuietly(arguments);
+                complete(ctx, msg, failResponse(request, new RpcException(ResponseCodeEnum.FAIL, "流式方法返回了 null")),
+                        receivedNanos);
+                return;
             }
+            sendResponse(ctx, msg, successResponse(request, null));
+            int credits = request.getStreamWindow() != null ? request.getStreamWindow() : RpcConstants.DEFAULT_STREAM_WINDOW;
+            streams.openSender(ctx.channel(), msg.getRequestId(), msg.getCodec(), msg.getCompress(),
+                    (Iterator<?>) result, credits, () -> {
+                        closeQuietly(arguments);
+                        // 数据流持续的时间不代表服务端的处理能力，不计入并发限制的耗时样本
+                        if (limiter != null) {
+                            limiter.releaseWithoutSample();
+                        }
+                        gate.exit();
+                    });
+            return;
+        }
+
+        // 异步服务方法：等 Future 完成后再写回响应，不占用业务线程
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, throwable) -> {
+                closeQuietly(arguments);
+                if (throwable != null) {
+                    complete(ctx, msg, failResponse(request,
+                            throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable),
+                            receivedNanos);
+                } else {
+                    complete(ctx, msg, successResponse(request, value), receivedNanos);
+                }
+            });
+            return;
+        }
+
+        closeQuietly(arguments);
+        complete(ctx, msg, successResponse(request, result), receivedNanos);
+    }
+
+    /**
+     * 服务方法返回后不再读取客户端流，客户端还在发送时通知它停止
+     */
+    private static void closeQuietly(StreamReceiver<?> arguments) {
+        if (arguments != null) {
+            arguments.close();
+        }
+    }
+
+    /**
+     * 写回响应并结束请求
+     */
+    private void complete(ChannelHandlerContext ctx, RpcMessage msg, RpcResponse response, long receivedNanos) {
+        sendResponse(ctx, msg, response);
+        finish(receivedNanos);
+    }
 
-            // 3. 通过反射调用真实服务
-            java.lang.reflect.Method method = service.getClass().getMethod(request.getMethodName(), parameterTypes);
-            Object result = method.invoke(service, request.getParameters());
-            
-            response.setCode(200);
-            response.setMessage("Success");
-            response.setData(result);
-            
-        } catch (Exception e) {
-            log.error("RPC调用执行失败", e);
-            response.setCode(500);
-            response.setMessage("Fail: " + e.getMessage());
+    /**
+     * 请求结束：归还并发许可，在途计数减一
+     */
+    private void finish(long receivedNanos) {
+        if (limiter != null) {
+            limiter.release(receivedNanos);
         }
+        gate.exit();
+    }
+
+    private RpcResponse successResponse(RpcRequest request, Object result) {
+        RpcResponse response = buildResponse(request, ResponseCodeEnum.SUCCESS, ResponseCodeEnum.SUCCESS.getMessage());
+        response.setData(result);
+        return response;
+    }
+
+    private RpcResponse failResponse(RpcRequest request, Throwable e) {
+        log.error("RPC调用执行失败", e);
+        return buildResponse(request, ResponseCodeEnum.FAIL, "Fail: " + e.getMessage());
+    }
+
+    private RpcResponse buildResponse(RpcRequest request, ResponseCodeEnum code, String message) {
+        return buildResponse(request.getRequestId(), code, message);
+    }
 
-        // 4. 封装 RpcResponse 发回给客户端
+    private RpcResponse buildResponse(long requestId, ResponseCodeEnum code, String message) {
+        RpcResponse response = new RpcResponse();
+        response.setRequestId(requestId);
+        response.setCode(code.getCode());
+        response.setMessage(message);
+        return response;
+    }
+
+    /**
+     * 封装 RpcResponse 发回给客户端
+     * writeAndFlush 是线程安全的，在业务线程调用时 Netty 会把写操作提交回 IO 线程
+     */
+    private void sendResponse(ChannelHandlerContext ctx, RpcMessage msg, RpcResponse response) {
         // 复用原来的 RpcMessage 或者新建一个
         RpcMessage responseMessage = new RpcMessage();
         responseMessage.setCodec(msg.getCodec());
+        // 按客户端声明的压缩算法压缩响应 (响应体超过阈值时才会真正压缩)
+        responseMessage.setCompress(msg.getCompress());
         responseMessage.setMessageType(MessageTypeEnum.RESPONSE.getType()); // Response
         responseMessage.setRequestId(msg.getRequestId());
         responseMessage.setData(response);
-        
+
         ctx.writeAndFlush(responseMessage);
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // 连接断开：服务方法读客户端流时抛出异常，服务端流停止发送
+        streams.closeAll(new RpcException(ResponseCodeEnum.FAIL, "连接已断开: " + ctx.channel().remoteAddress()));
+        super.channelInactive(ctx);
+    }
+
     // 处理空闲事件
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-        if (evt instanceof IdleStateEvent) {
+        if (evt instanceof ChunkDiscardedEvent) {
+            // 请求太大没有收下：直接回复失败；客户端流的元素太大：结束这个数据流
+            ChunkDiscardedEvent event = (ChunkDiscardedEvent) evt;
+            if (event.getMessageType() == MessageTypeEnum.REQUEST.getType()) {
+                RpcMessage request = new RpcMessage();
+                request.setCodec(event.getCodec());
+                request.setCompress(event.getCompress());
+                request.setRequestId(event.getRequestId());
+                sendResponse(ctx, request, buildResponse(event.getRequestId(), ResponseCodeEnum.FAIL, "Fail: " + event.getReason()));
+            } else {
+                streams.abort(event.getRequestId(), new RpcException(ResponseCodeEnum.FAIL, event.getReason()));
+            }
+        } else if (evt instanceof IdleStateEvent) {
             IdleStateEvent event = (IdleStateEvent) evt;
             if (event.state() == IdleState.READER_IDLE) {
+                // 有进行中的数据流时不关闭：服务端流等待客户端补充额度、客户端流等待客户端发数据，
+                // 这段时间连接上可能一直没有入站消息
+                if (!streams.isEmpty()) {
+                    log.debug("【服务端】连接上还有 {} 个进行中的数据流，不关闭: {}", streams.size(), ctx.channel().remoteAddress());
+                    return;
+                }
                 log.warn("【服务端】10秒未收到数据，关闭连接: {}", ctx.channel().remoteAddress());
                 ctx.close(); // 强制关闭连接
             }
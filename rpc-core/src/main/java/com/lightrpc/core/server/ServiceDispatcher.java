@@ -0,0 +1,156 @@
+package com.lightrpc.core.server;
+
+import com.lightrpc.common.enums.DispatchModeEnum;
+import com.lightrpc.core.config.RpcServerConfig;
+import com.lightrpc.core.stream.StreamSender;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 业务派发器
+ * 决定服务方法在哪个线程上执行：IO 线程、共享业务线程池、按服务隔离的线程池或虚拟线程
+ * 所有线程池都是有界的，排满后立即拒绝，由调用方返回 SERVER_BUSY
+ */
+@Slf4j
+public class ServiceDispatcher {
+
+    private final DispatchModeEnum dispatchMode;
+
+    /**
+     * 共享舱壁，没有单独配置的服务都用它
+     */
+    private final Bulkhead sharedBulkhead;
+
+    /**
+     * 按服务隔离的舱壁 (启动时创建，之后只读)
+     */
+    private final Map<String, Bulkhead> serviceBulkheads = new HashMap<>();
+
+    public ServiceDispatcher(RpcServerConfig config) {
+        DispatchModeEnum mode = config.getDispatchMode();
+        if (mode == DispatchModeEnum.VIRTUAL_THREAD && newVirtualThreadExecutor() == null) {
+            log.warn("当前 JDK 不支持虚拟线程，业务派发模式退回 THREAD_POOL");
+            mode = DispatchModeEnum.THREAD_POOL;
+        }
+        this.dispatchMode = mode;
+
+        this.sharedBulkhead = mode == DispatchModeEnum.IO_THREAD
+                ? null
+                : createBulkhead("shared", config.getBusinessThreads(), config.getBusinessQueueSize());
+        if (mode != DispatchModeEnum.IO_THREAD) {
+            config.getServiceThreads().forEach((serviceName, threads) ->
+                    serviceBulkheads.put(serviceName, createBulkhead(serviceName, threads, config.getBusinessQueueSize())));
+        }
+        log.info("【服务端】业务派发模式: {}, 独立线程池的服务: {}", dispatchMode, serviceBulkheads.keySet());
+    }
+
+    /**
+     * 派发一个请求
+     * @param serviceName 服务名，用来选择舱壁
+     * @param invoker     方法调用器，标注了 IO 线程执行的方法直接在当前线程执行
+     * @param task        真正的处理逻辑
+     * @return false 表示线程池已满，请求被拒绝 (task 没有执行)
+     */
+    public boolean dispatch(String serviceName, MethodInvoker invoker, Runnable task) {
+        if (invoker.getStreamParameter() >= 0 && (dispatchMode == DispatchModeEnum.IO_THREAD || invoker.isIoThread())) {
+            // 读取客户端流会阻塞等待数据，在 IO 线程上读会把自己卡住，改到数据流线程池执行
+            return StreamSender.execute(task);
+        }
+        if (dispatchMode == DispatchModeEnum.IO_THREAD || invoker.isIoThread()) {
+            task.run();
+            return true;
+        }
+        Bulkhead bulkhead = serviceBulkheads.get(serviceName);
+        return (bulkhead != null ? bulkhead : sharedBulkhead).tryExecute(task);
+    }
+
+    public void shutdown() {
+        if (sharedBulkhead != null) {
+            sharedBulkhead.executor.shutdown();
+        }
+        serviceBulkheads.values().forEach(bulkhead -> bulkhead.executor.shutdown());
+    }
+
+    private Bulkhead createBulkhead(String name, int threads, int queueSize) {
+        if (dispatchMode == DispatchModeEnum.VIRTUAL_THREAD) {
+            // 虚拟线程没有队列，用信号量限制同时执行的请求数
+            return new Bulkhead(newVirtualThreadExecutor(), new Semaphore(threads + queueSize));
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new DefaultThreadFactory("rpc-business-" + simpleName(name), true),
+                new ThreadPoolExecutor.AbortPolicy());
+        return new Bulkhead(executor, null);
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，项目按 JDK 8 编译，JDK 21 以下返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static String simpleName(String serviceName) {
+        return serviceName.substring(serviceName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * 舱壁：一个有界的执行器
+     */
+    private static class Bulkhead {
+
+        private final ExecutorService executor;
+
+        /**
+         * 并发许可，只有虚拟线程模式使用 (线程池模式靠有界队列限流)
+         */
+        private final Semaphore permits;
+
+        Bulkhead(ExecutorService executor, Semaphore permits) {
+            this.executor = executor;
+            this.permits = permits;
+        }
+
+        boolean tryExecute(Runnable task) {
+            if (permits == null) {
+                try {
+                    executor.execute(task);
+                    return true;
+                } catch (RejectedExecutionException e) {
+                    return false;
+                }
+            }
+
+            if (!permits.tryAcquire()) {
+                return false;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                return false;
+            }
+        }
+    }
+}
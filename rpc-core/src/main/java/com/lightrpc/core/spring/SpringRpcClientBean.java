@@ -1,10 +1,13 @@
 package com.lightrpc.core.spring;
 
 import com.lightrpc.core.annotation.LightRpcClient;
+import com.lightrpc.core.config.RpcClientConfig;
+import com.lightrpc.core.proxy.RpcClientFactory;
 import com.lightrpc.core.proxy.RpcClientProxy;
 import com.lightrpc.registry.ServiceRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 
 import java.lang.reflect.Field;
@@ -14,13 +17,17 @@ import java.lang.reflect.Field;
  * 负责扫描 @LightRpcClient 注解，自动注入代理对象
  */
 @Slf4j
-public class SpringRpcClientBean implements BeanPostProcessor {
+public class SpringRpcClientBean implements BeanPostProcessor, DisposableBean {
 
     private final RpcClientProxy rpcClientProxy;
 
     public SpringRpcClientBean(ServiceRegistry serviceRegistry) {
+        this(serviceRegistry, new RpcClientConfig());
+    }
+
+    public SpringRpcClientBean(ServiceRegistry serviceRegistry, RpcClientConfig config) {
         // 在这里初始化代理工厂
-        this.rpcClientProxy = new RpcClientProxy(serviceRegistry);
+        this.rpcClientProxy = new RpcClientProxy(serviceRegistry, config);
     }
 
     @Override
@@ -36,8 +43,9 @@ public class SpringRpcClientBean implements BeanPostProcessor {
                     // 1. 获取字段类型 (接口类型，如 UserService)
                     Class<?> interfaceClass = field.getType();
 
-                    // 2. 使用代理工厂生成代理对象
-                    Object proxy = rpcClientProxy.getProxy(interfaceClass);
+                    // 2. 使用代理工厂生成代理对象 (按注解上的版本和分组路由)
+                    LightRpcClient lightRpcClient = field.getAnnotation(LightRpcClient.class);
+                    Object proxy = rpcClientProxy.getProxy(interfaceClass, lightRpcClient.version(), lightRpcClient.group());
 
                     // 3. 暴力反射注入 (因为字段通常是 private 的)
                     field.setAccessible(true);
@@ -52,4 +60,12 @@ public class SpringRpcClientBean implements BeanPostProcessor {
         }
         return bean;
     }
-}
\ No newline at end of file
+
+    /**
+     * 容器关闭时断开所有连接并释放客户端 IO 线程
+     */
+    @Override
+    public void destroy() {
+        RpcClientFactory.shutdown();
+    }
+}
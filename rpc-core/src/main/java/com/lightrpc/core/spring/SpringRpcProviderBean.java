@@ -1,10 +1,12 @@
 package com.lightrpc.core.spring;
 
 import com.lightrpc.core.annotation.LightRpcService;
+import com.lightrpc.core.config.RpcServerConfig;
 import com.lightrpc.core.server.RpcServer;
 import com.lightrpc.registry.ServiceRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
@@ -13,15 +15,20 @@ import org.springframework.context.event.ContextRefreshedEvent;
  * Spring 集成核心类 (服务端)
  * 1. 负责扫描 @LightRpcService 注解，自动发布服务
  * 2. 负责在 Spring 启动完毕后，启动 Netty 服务端
+ * 3. 负责在 Spring 容器关闭时优雅停机
  */
 @Slf4j
-public class SpringRpcProviderBean implements BeanPostProcessor, ApplicationListener<ContextRefreshedEvent> {
+public class SpringRpcProviderBean implements BeanPostProcessor, ApplicationListener<ContextRefreshedEvent>, DisposableBean {
 
     private final RpcServer rpcServer;
 
     public SpringRpcProviderBean(String host, int port, ServiceRegistry registry) {
+        this(host, port, registry, new RpcServerConfig());
+    }
+
+    public SpringRpcProviderBean(String host, int port, ServiceRegistry registry, RpcServerConfig config) {
         // 在构造时就创建好 RpcServer，但先不 start
-        this.rpcServer = new RpcServer(host, port, registry);
+        this.rpcServer = new RpcServer(host, port, registry, config);
     }
 
     /**
@@ -43,8 +50,9 @@ public class SpringRpcProviderBean implements BeanPostProcessor, ApplicationList
             }
             String serviceName = interfaceClass.getName();
 
-            rpcServer.publishService(serviceName, bean);
-            log.info("【Spring自动注册】发现服务 【{}】，已自动注册", serviceName);
+            rpcServer.publishService(serviceName, lightRpcService.version(), lightRpcService.group(), bean);
+            log.info("【Spring自动注册】发现服务 【{}】，版本: {}，分组: {}，已自动注册",
+                    serviceName, lightRpcService.version(), lightRpcService.group());
         }
         return bean;
     }
@@ -60,4 +68,13 @@ public class SpringRpcProviderBean implements BeanPostProcessor, ApplicationList
             new Thread(rpcServer::start).start();
         }
     }
+
+    /**
+     * Spring 容器关闭时调用
+     * 先注销服务、处理完在途请求，再关闭 Netty Server
+     */
+    @Override
+    public void destroy() {
+        rpcServer.shutdown();
+    }
 }
@@ -0,0 +1,108 @@
+package com.lightrpc.core.stream;
+
+import com.lightrpc.api.stream.RpcStream;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 客户端一次流式调用的状态
+ * 参数里的 RpcStream 不随请求序列化，请求发出后作为参数流逐个发送；返回值为 RpcStream 时，收到的元素进入接收流
+ */
+@Getter
+public class StreamCall {
+
+    /**
+     * RpcStream 参数的位置，没有时为 -1
+     */
+    private final int streamParameter;
+
+    /**
+     * 参数流，没有时为 null
+     */
+    private final RpcStream<?> outbound;
+
+    /**
+     * 返回值是否是数据流
+     */
+    private final boolean streamResult;
+
+    /**
+     * 结果流的接收额度
+     */
+    private final int window;
+
+    /**
+     * 结果流的接收端，请求发出时创建
+     */
+    @Setter
+    private volatile StreamReceiver<?> receiver;
+
+    private StreamCall(int streamParameter, RpcStream<?> outbound, boolean streamResult, int window) {
+        this.streamParameter = streamParameter;
+        this.outbound = outbound;
+        this.streamResult = streamResult;
+        this.window = window;
+    }
+
+    /**
+     * @return 方法既没有 RpcStream 参数也不返回 RpcStream 时返回 null
+     */
+    public static StreamCall of(Method method, Object[] args, int window) {
+        int streamParameter = streamParameter(method);
+        boolean streamResult = RpcStream.class.isAssignableFrom(method.getReturnType());
+        if (streamParameter < 0 && !streamResult) {
+            return null;
+        }
+        RpcStream<?> outbound = null;
+        if (streamParameter >= 0) {
+            // 参数传 null 等同于空的数据流，服务端读到的是一个马上结束的流
+            outbound = args[streamParameter] != null ? (RpcStream<?>) args[streamParameter] : RpcStream.of(Collections.emptyIterator());
+        }
+        return new StreamCall(streamParameter, outbound, streamResult, window);
+    }
+
+    /**
+     * 方法里 RpcStream 参数的位置，没有时返回 -1，多于一个时抛出异常
+     */
+    public static int streamParameter(Method method) {
+        int index = -1;
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (RpcStream.class.isAssignableFrom(parameterTypes[i])) {
+                if (index >= 0) {
+                    throw new IllegalArgumentException("方法最多只能有一个 RpcStream 参数: " + method);
+                }
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 调用时的参数：数据流参数为 null 时换成空的数据流 (进程内调用直接使用)
+     */
+    public Object[] parameters(Object[] args) {
+        if (streamParameter < 0 || args[streamParameter] != null) {
+            return args;
+        }
+        Object[] parameters = Arrays.copyOf(args, args.length);
+        parameters[streamParameter] = outbound;
+        return parameters;
+    }
+
+    /**
+     * 随请求发送的参数：数据流参数位置填 null
+     */
+    public Object[] wireParameters(Object[] args) {
+        if (streamParameter < 0) {
+            return args;
+        }
+        Object[] parameters = Arrays.copyOf(args, args.length);
+        parameters[streamParameter] = null;
+        return parameters;
+    }
+}
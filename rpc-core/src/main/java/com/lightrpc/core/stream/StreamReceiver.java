@@ -0,0 +1,207 @@
+package com.lightrpc.core.stream;
+
+import com.lightrpc.api.stream.RpcStream;
+import com.lightrpc.common.enums.MessageTypeEnum;
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import com.lightrpc.common.exception.RpcException;
+import com.lightrpc.common.model.RpcMessage;
+import com.lightrpc.common.model.StreamFrame;
+import io.netty.channel.Channel;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 数据流的接收端，交给消费方的 RpcStream
+ * IO 线程把收到的元素放进队列，消费方在自己的线程上读取；每读完半个额度的元素就告诉发送方可以再发这么多，
+ * 所以队列里最多缓存 window 个元素，发送方超出窗口时取消数据流
+ * 只能由一个线程读取
+ */
+public class StreamReceiver<T> implements RpcStream<T> {
+
+    /**
+     * 队列里的结束标记
+     */
+    private static final Object END = new Object();
+
+    /**
+     * 队列里的 null 元素
+     */
+    private static final Object NULL = new Object();
+
+    private final Channel channel;
+
+    private final long requestId;
+
+    private final byte codec;
+
+    private final byte compress;
+
+    private final int window;
+
+    /**
+     * 结束 (正常结束、出错、被关闭) 时调用，用来从 StreamTable 移除
+     */
+    private final Runnable onClose;
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * 发送方已经结束 (收到 STREAM_END 或者连接断开)
+     */
+    private volatile boolean ended;
+
+    private volatile RpcException failure;
+
+    /**
+     * 以下字段只由读取线程访问
+     */
+    private Object next;
+
+    private boolean done;
+
+    private int consumed;
+
+    StreamReceiver(Channel channel, long requestId, byte codec, byte compress, int window, Runnable onClose) {
+        this.channel = channel;
+        this.requestId = requestId;
+        this.codec = codec;
+        this.compress = compress;
+        this.window = Math.max(window, 1);
+        this.onClose = onClose;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    void onData(Object item) {
+        if (closed.get() || ended) {
+            return;
+        }
+        // 按额度发送时队列里不会超过 window 个元素，超过说明发送方不遵守流控，停止接收，避免队列无限增长
+        if (queue.size() >= window) {
+            abort(new RpcException(ResponseCodeEnum.FAIL, "发送方超出了数据流窗口: " + window));
+            return;
+        }
+        queue.offer(item == null ? NULL : item);
+    }
+
+    void onEnd(StreamFrame frame) {
+        Integer code = frame == null ? null : frame.getCode();
+        if (code != null && code != ResponseCodeEnum.SUCCESS.getCode()) {
+            fail(new RpcException(code, "数据流异常结束: " + frame.getMessage()));
+            return;
+        }
+        ended = true;
+        queue.offer(END);
+        onClose.run();
+    }
+
+    /**
+     * 发送方出错或者连接断开，读完已经收到的元素后抛出异常
+     */
+    public void fail(RpcException cause) {
+        failure = cause;
+        ended = true;
+        queue.offer(END);
+        onClose.run();
+    }
+
+    /**
+     * 本端没法继续接收 (例如元素超过分片拼接的内存上限被丢弃)：通知发送方停止，读取方读完已收到的元素后抛出异常
+     */
+    void abort(RpcException cause) {
+        if (!ended) {
+            StreamFrame frame = new StreamFrame();
+            frame.setMessage(cause.getMessage());
+            send(MessageTypeEnum.STREAM_CANCEL, frame);
+        }
+        fail(cause);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (done) {
+            return false;
+        }
+        Object item;
+        try {
+            item = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException(ResponseCodeEnum.FAIL, "等待数据流元素时被中断");
+        }
+        if (item == END) {
+            done = true;
+            RpcException cause = failure;
+            if (cause != null && !closed.get()) {
+                throw cause;
+            }
+            return false;
+        }
+        next = item;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object item = next;
+        next = null;
+        // 处理完半个额度再补充，避免每个元素都发一次 STREAM_WINDOW
+        if (++consumed >= Math.max(window / 2, 1) && !ended) {
+            grant(consumed);
+            consumed = 0;
+        }
+        return item == NULL ? null : (T) item;
+    }
+
+    /**
+     * 给发送方增加额度 (服务端收到客户端流时先给初始额度)
+     */
+    public void grant(int credits) {
+        StreamFrame frame = new StreamFrame();
+        frame.setCredits(credits);
+        send(MessageTypeEnum.STREAM_WINDOW, frame);
+    }
+
+    /**
+     * 不再读取剩余元素：发送方还没结束时通知它停止
+     * 可以在其它线程调用，正在等待元素的读取线程会返回 false
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (!ended) {
+            StreamFrame frame = new StreamFrame();
+            frame.setMessage("接收方已关闭数据流");
+            send(MessageTypeEnum.STREAM_CANCEL, frame);
+        }
+        queue.clear();
+        queue.offer(END);
+        onClose.run();
+    }
+
+    private void send(MessageTypeEnum type, StreamFrame frame) {
+        RpcMessage message = new RpcMessage();
+        message.setCodec(codec);
+        message.setCompress(compress);
+        message.setMessageType(type.getType());
+        message.setRequestId(requestId);
+        message.setData(frame);
+        channel.writeAndFlush(message);
+    }
+}
@@ -0,0 +1,197 @@
+package com.lightrpc.core.stream;
+
+import com.lightrpc.common.constants.RpcConstants;
+import com.lightrpc.common.enums.MessageTypeEnum;
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import com.lightrpc.common.model.RpcMessage;
+import com.lightrpc.common.model.StreamFrame;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据流的发送端
+ * 从数据源 (迭代器) 逐个取元素发给对端，额度用完就暂停，收到 STREAM_WINDOW 后继续，对端处理多快就发多快
+ * 在独立的线程池上执行：数据源的 hasNext / next 可能阻塞 (例如读数据库游标)，不能占用 IO 线程和业务线程
+ * 线程池和业务舱壁一样是有界的，排满后新的数据流直接失败
+ */
+@Slf4j
+public class StreamSender implements Runnable {
+
+    private static final ThreadPoolExecutor EXECUTOR = newExecutor();
+
+    private final Channel channel;
+
+    private final long requestId;
+
+    private final byte codec;
+
+    private final byte compress;
+
+    private final Iterator<?> source;
+
+    /**
+     * 结束 (发完、出错、被取消或连接断开) 时调用一次
+     */
+    private final Runnable onFinish;
+
+    /**
+     * 还能发送的元素个数
+     */
+    private final AtomicInteger credits;
+
+    /**
+     * 是否已经提交到线程池，保证同一时间只有一个线程在发送
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private volatile boolean cancelled;
+
+    StreamSender(Channel channel, long requestId, byte codec, byte compress, Iterator<?> source,
+                 int credits, Runnable onFinish) {
+        this.channel = channel;
+        this.requestId = requestId;
+        this.codec = codec;
+        this.compress = compress;
+        this.source = source;
+        this.credits = new AtomicInteger(credits);
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * 对端处理完一批元素，补充额度
+     */
+    public void addCredits(int count) {
+        credits.addAndGet(count);
+        schedule();
+    }
+
+    /**
+     * 对端不再需要剩余元素，或者连接已断开
+     * 数据源正阻塞在 hasNext / next 上时，要等它返回后才能停下
+     */
+    public void cancel() {
+        cancelled = true;
+        schedule();
+    }
+
+    /**
+     * 在数据流线程池上执行任务 (可能长时间阻塞的数据流读取)
+     * @return false 表示线程池已满，任务被拒绝 (没有执行)
+     */
+    public static boolean execute(Runnable task) {
+        try {
+            EXECUTOR.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    void schedule() {
+        if (finished.get() || !scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (!execute(this)) {
+            // 没有提交成功，当前也没有线程在发送，这里直接结束
+            log.warn("数据流线程池已满，数据流失败, requestId: {}", requestId);
+            if (!cancelled && channel.isActive()) {
+                sendEnd(ResponseCodeEnum.SERVER_BUSY, ResponseCodeEnum.SERVER_BUSY.getMessage());
+            }
+            finish();
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(RpcConstants.STREAM_THREADS, RpcConstants.STREAM_THREADS,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(RpcConstants.STREAM_QUEUE_SIZE),
+                new DefaultThreadFactory("rpc-stream", true), new ThreadPoolExecutor.AbortPolicy());
+        // 没有数据流时不保留线程
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                if (cancelled || !channel.isActive()) {
+                    finish();
+                    return;
+                }
+                if (credits.get() <= 0) {
+                    scheduled.set(false);
+                    // 让出执行权之后额度或取消可能刚好到达，再检查一次，避免丢失唤醒
+                    if ((credits.get() > 0 || cancelled) && scheduled.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    return;
+                }
+
+                Object item;
+                try {
+                    if (!source.hasNext()) {
+                        sendEnd(ResponseCodeEnum.SUCCESS, null);
+                        finish();
+                        return;
+                    }
+                    item = source.next();
+                } catch (Throwable e) {
+                    log.error("数据流读取元素失败, requestId: {}", requestId, e);
+                    sendEnd(ResponseCodeEnum.FAIL, "Fail: " + e.getMessage());
+                    finish();
+                    return;
+                }
+
+                credits.decrementAndGet();
+                StreamFrame frame = new StreamFrame();
+                frame.setData(item);
+                send(MessageTypeEnum.STREAM_DATA, frame);
+            }
+        } catch (Throwable e) {
+            log.error("数据流发送失败, requestId: {}", requestId, e);
+            finish();
+        }
+    }
+
+    private void sendEnd(ResponseCodeEnum code, String message) {
+        StreamFrame frame = new StreamFrame();
+        frame.setCode(code.getCode());
+        frame.setMessage(message);
+        send(MessageTypeEnum.STREAM_END, frame);
+    }
+
+    private void send(MessageTypeEnum type, StreamFrame frame) {
+        RpcMessage message = new RpcMessage();
+        message.setCodec(codec);
+        message.setCompress(compress);
+        message.setMessageType(type.getType());
+        message.setRequestId(requestId);
+        message.setData(frame);
+        channel.writeAndFlush(message);
+    }
+
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (source instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) source).close();
+            } catch (Exception e) {
+                log.warn("关闭数据源失败, requestId: {}", requestId, e);
+            }
+        }
+        onFinish.run();
+    }
+}
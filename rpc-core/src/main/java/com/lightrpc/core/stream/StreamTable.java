@@ -0,0 +1,164 @@
+package com.lightrpc.core.stream;
+
+import com.lightrpc.common.enums.MessageTypeEnum;
+import com.lightrpc.common.enums.ResponseCodeEnum;
+import com.lightrpc.common.exception.RpcException;
+import com.lightrpc.common.model.RpcMessage;
+import com.lightrpc.common.model.RpcResponse;
+import com.lightrpc.common.model.StreamFrame;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一个连接上进行中的数据流，按请求 ID 区分
+ * 同一个调用最多有一个接收流和一个发送流 (双向流)：
+ * 收到的 STREAM_DATA / STREAM_END 交给接收流，STREAM_WINDOW / STREAM_CANCEL 交给发送流
+ * 找不到对应数据流的消息 (已经结束或取消) 直接丢弃
+ */
+@Slf4j
+public class StreamTable {
+
+    private final Map<Long, StreamReceiver<?>> receivers = new ConcurrentHashMap<>();
+
+    private final Map<Long, StreamSender> senders = new ConcurrentHashMap<>();
+
+    /**
+     * 最近一次收到流式消息的时间
+     */
+    private volatile long lastActiveTime = System.currentTimeMillis();
+
+    /**
+     * 登记接收流
+     * @param window 接收方最多缓存的元素个数
+     */
+    public <T> StreamReceiver<T> openReceiver(Channel channel, long requestId, byte codec, byte compress, int window) {
+        StreamReceiver<T> receiver = new StreamReceiver<>(channel, requestId, codec, compress, window,
+                () -> receivers.remove(requestId));
+        receivers.put(requestId, receiver);
+        return receiver;
+    }
+
+    /**
+     * 登记发送流并开始发送
+     * @param credits  初始额度，为 0 时等对端的 STREAM_WINDOW 到了再发
+     * @param onFinish 发送结束 (发完、出错、被取消或连接断开) 时调用
+     */
+    public StreamSender openSender(Channel channel, long requestId, byte codec, byte compress,
+                                   Iterator<?> source, int credits, Runnable onFinish) {
+        StreamSender sender = new StreamSender(channel, requestId, codec, compress, source, credits, () -> {
+            senders.remove(requestId);
+            onFinish.run();
+        });
+        senders.put(requestId, sender);
+        sender.schedule();
+        return sender;
+    }
+
+    /**
+     * 客户端登记一次流式调用：结果流的接收端、参数流的发送端
+     * 调用失败 (响应失败或者没有收到响应) 时两端都结束
+     */
+    public void openCall(Channel channel, RpcMessage message, StreamCall call, CompletableFuture<RpcResponse> response) {
+        long requestId = message.getRequestId();
+        StreamReceiver<?> receiver = null;
+        if (call.isStreamResult()) {
+            receiver = openReceiver(channel, requestId, message.getCodec(), message.getCompress(), call.getWindow());
+            call.setReceiver(receiver);
+        }
+        // 参数流等服务端给出额度后再发
+        StreamSender sender = call.getOutbound() == null ? null
+                : openSender(channel, requestId, message.getCodec(), message.getCompress(), call.getOutbound(), 0, () -> { });
+
+        StreamReceiver<?> resultReceiver = receiver;
+        response.whenComplete((value, throwable) -> {
+            if (throwable == null && value != null && value.getCode() != null
+                    && value.getCode() == ResponseCodeEnum.SUCCESS.getCode()) {
+                return;
+            }
+            RpcException cause = new RpcException(ResponseCodeEnum.FAIL, "流式调用失败: "
+                    + (throwable != null ? throwable.getMessage() : value == null ? null : value.getMessage()));
+            if (resultReceiver != null) {
+                resultReceiver.fail(cause);
+            }
+            if (sender != null) {
+                sender.cancel();
+            }
+        });
+    }
+
+    /**
+     * 处理对端发来的流式消息 (在 IO 线程上执行)
+     */
+    public void onFrame(RpcMessage message) {
+        lastActiveTime = System.currentTimeMillis();
+        long requestId = message.getRequestId();
+        StreamFrame frame = (StreamFrame) message.getData();
+        byte type = message.getMessageType();
+        if (type == MessageTypeEnum.STREAM_DATA.getType() || type == MessageTypeEnum.STREAM_END.getType()) {
+            StreamReceiver<?> receiver = receivers.get(requestId);
+            if (receiver == null) {
+                log.debug("数据流不存在或已结束，丢弃消息: {}", message);
+            } else if (type == MessageTypeEnum.STREAM_DATA.getType()) {
+                // 元素为 null 时消息体为空
+                receiver.onData(frame == null ? null : frame.getData());
+            } else {
+                receiver.onEnd(frame);
+            }
+            return;
+        }
+
+        StreamSender sender = senders.get(requestId);
+        if (sender == null) {
+            log.debug("数据流不存在或已结束，丢弃消息: {}", message);
+        } else if (type == MessageTypeEnum.STREAM_WINDOW.getType()) {
+            if (frame != null && frame.getCredits() != null && frame.getCredits() > 0) {
+                sender.addCredits(frame.getCredits());
+            }
+        } else {
+            log.info("对端取消了数据流, requestId: {}, 原因: {}", requestId, frame == null ? null : frame.getMessage());
+            sender.cancel();
+        }
+    }
+
+    /**
+     * 收到的元素被丢弃 (见 ChunkDiscardedEvent)：接收流以异常结束并通知对端停止发送
+     */
+    public void abort(long requestId, RpcException cause) {
+        StreamReceiver<?> receiver = receivers.get(requestId);
+        if (receiver != null) {
+            receiver.abort(cause);
+        }
+    }
+
+    /**
+     * 进行中的数据流个数 (双向流算两个)
+     */
+    public int size() {
+        return receivers.size() + senders.size();
+    }
+
+    public boolean isEmpty() {
+        return receivers.isEmpty() && senders.isEmpty();
+    }
+
+    public long getLastActiveTime() {
+        return lastActiveTime;
+    }
+
+    /**
+     * 连接断开：接收流以异常结束，发送流停止
+     */
+    public void closeAll(RpcException cause) {
+        for (StreamReceiver<?> receiver : receivers.values()) {
+            receiver.fail(cause);
+        }
+        for (StreamSender sender : senders.values()) {
+            sender.cancel();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.lightrpc.core.transport;
+
+import com.lightrpc.registry.ServiceInstance;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.unix.DomainSocketAddress;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 同机、同进程调用的连接地址
+ * 服务端把 Unix Domain Socket 路径和 LocalChannel 名称写进实例元数据，
+ * 客户端发现实例就在当前 JVM (或本机) 时改用这些地址连接，不走 TCP 协议栈
+ * 判断结果按实例缓存，实例重新注册 (元数据可能变了) 后重新判断
+ */
+@Slf4j
+public class LocalEndpoints {
+
+    /**
+     * 当前 JVM 里已经绑定的 LocalChannel 名称
+     */
+    private static final Set<String> BOUND_LOCAL_CHANNELS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Key: 实例的 TCP 地址
+     */
+    private static final Map<InetSocketAddress, Resolved> CACHE = new ConcurrentHashMap<>();
+
+    private LocalEndpoints() {
+    }
+
+    public static void bindLocalChannel(String name) {
+        BOUND_LOCAL_CHANNELS.add(name);
+    }
+
+    public static void unbindLocalChannel(String name) {
+        BOUND_LOCAL_CHANNELS.remove(name);
+    }
+
+    /**
+     * 选择连接实例用的地址
+     * 1. 实例的 LocalChannel 绑定在当前 JVM 里：LocalChannel
+     * 2. 实例在本机、Socket 文件存在、客户端传输实现支持：Unix Domain Socket
+     * 3. 其它情况：TCP 地址
+     * @param domainSocket 客户端的传输实现是否支持 Unix Domain Socket
+     */
+    public static SocketAddress resolve(ServiceInstance instance, boolean domainSocket) {
+        Resolved resolved = CACHE.get(instance.getAddress());
+        if (resolved == null || resolved.instance != instance) {
+            resolved = new Resolved(instance, doResolve(instance, domainSocket));
+            CACHE.put(instance.getAddress(), resolved);
+        }
+        return resolved.address;
+    }
+
+    private static SocketAddress doResolve(ServiceInstance instance, boolean domainSocket) {
+        String localChannel = instance.getMetadata().get(ServiceInstance.METADATA_LOCAL_CHANNEL);
+        if (localChannel != null && BOUND_LOCAL_CHANNELS.contains(localChannel)) {
+            log.info("服务端在当前 JVM 内，使用 LocalChannel 连接: {} -> {}", instance, localChannel);
+            return new LocalAddress(localChannel);
+        }
+        String path = instance.getMetadata().get(ServiceInstance.METADATA_UDS_PATH);
+        if (path != null && domainSocket && isLocalHost(instance.getAddress()) && Files.exists(Paths.get(path))) {
+            log.info("服务端在本机，使用 Unix Domain Socket 连接: {} -> {}", instance, path);
+            return new DomainSocketAddress(path);
+        }
+        return instance.getAddress();
+    }
+
+    /**
+     * 地址是不是本机的 (回环地址或者本机某块网卡的地址)
+     */
+    private static boolean isLocalHost(InetSocketAddress address) {
+        try {
+            InetAddress inetAddress = address.isUnresolved()
+                    ? InetAddress.getByName(address.getHostString())
+                    : address.getAddress();
+            return inetAddress.isLoopbackAddress() || inetAddress.isAnyLocalAddress()
+                    || NetworkInterface.getByInetAddress(inetAddress) != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static class Resolved {
+
+        private final ServiceInstance instance;
+
+        private final SocketAddress address;
+
+        Resolved(ServiceInstance instance, SocketAddress address) {
+            this.instance = instance;
+            this.address = address;
+        }
+    }
+}
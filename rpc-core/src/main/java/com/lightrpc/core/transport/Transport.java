@@ -0,0 +1,187 @@
+package com.lightrpc.core.transport;
+
+import com.lightrpc.common.enums.TransportTypeEnum;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 网络传输实现：决定 EventLoopGroup 和 Channel 用哪一套
+ * 选中的实现不可用时 (非 Linux、缺少 native 库、内核版本太低) 自动退回下一级，最终一定能用 NIO
+ * io_uring 还在 Netty incubator 里，没有编译期依赖，通过反射加载，只有显式指定时才会尝试
+ */
+@Slf4j
+public class Transport {
+
+    private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+    private final TransportTypeEnum type;
+
+    private final Class<? extends ServerChannel> serverChannelClass;
+
+    private final Class<? extends SocketChannel> channelClass;
+
+    /**
+     * Unix Domain Socket 的 Channel，只有 epoll 支持，其它实现为 null
+     */
+    private final Class<? extends ServerChannel> domainServerChannelClass;
+
+    private final Class<? extends Channel> domainChannelClass;
+
+    private final GroupFactory groupFactory;
+
+    private Transport(TransportTypeEnum type, Class<? extends ServerChannel> serverChannelClass,
+                      Class<? extends SocketChannel> channelClass, GroupFactory groupFactory) {
+        this(type, serverChannelClass, channelClass, null, null, groupFactory);
+    }
+
+    private Transport(TransportTypeEnum type, Class<? extends ServerChannel> serverChannelClass,
+                      Class<? extends SocketChannel> channelClass, Class<? extends ServerChannel> domainServerChannelClass,
+                      Class<? extends Channel> domainChannelClass, GroupFactory groupFactory) {
+        this.type = type;
+        this.serverChannelClass = serverChannelClass;
+        this.channelClass = channelClass;
+        this.domainServerChannelClass = domainServerChannelClass;
+        this.domainChannelClass = domainChannelClass;
+        this.groupFactory = groupFactory;
+    }
+
+    /**
+     * 按配置选择传输实现
+     * @param requested 期望的实现，null 等同于 AUTO
+     */
+    public static Transport select(TransportTypeEnum requested) {
+        if (requested == null) {
+            requested = TransportTypeEnum.AUTO;
+        }
+        if (requested == TransportTypeEnum.IO_URING) {
+            Transport ioUring = ioUring();
+            if (ioUring != null) {
+                return ioUring;
+            }
+        }
+        if (requested != TransportTypeEnum.NIO) {
+            Transport epoll = epoll(requested != TransportTypeEnum.AUTO);
+            if (epoll != null) {
+                return epoll;
+            }
+        }
+        return nio();
+    }
+
+    /**
+     * 创建 EventLoopGroup
+     * @param threads  线程数，小于等于 0 表示使用 Netty 默认值 (CPU 核数 * 2)
+     * @param poolName 线程名前缀
+     * @param daemon   是否是守护线程
+     */
+    public EventLoopGroup newEventLoopGroup(int threads, String poolName, boolean daemon) {
+        return groupFactory.create(Math.max(threads, 0), new DefaultThreadFactory(poolName, daemon));
+    }
+
+    public TransportTypeEnum getType() {
+        return type;
+    }
+
+    public Class<? extends ServerChannel> getServerChannelClass() {
+        return serverChannelClass;
+    }
+
+    public Class<? extends SocketChannel> getChannelClass() {
+        return channelClass;
+    }
+
+    /**
+     * 是否支持 Unix Domain Socket (需要在这个实现创建的 EventLoopGroup 上使用)
+     */
+    public boolean supportsDomainSocket() {
+        return domainChannelClass != null;
+    }
+
+    public Class<? extends ServerChannel> getDomainServerChannelClass() {
+        return domainServerChannelClass;
+    }
+
+    public Class<? extends Channel> getDomainChannelClass() {
+        return domainChannelClass;
+    }
+
+    private static Transport nio() {
+        return new Transport(TransportTypeEnum.NIO, NioServerSocketChannel.class, NioSocketChannel.class,
+                NioEventLoopGroup::new);
+    }
+
+    /**
+     * @param explicit 是否是显式指定的，显式指定却不可用时打印警告
+     */
+    private static Transport epoll(boolean explicit) {
+        try {
+            if (Epoll.isAvailable()) {
+                return new Transport(TransportTypeEnum.EPOLL, EpollServerSocketChannel.class, EpollSocketChannel.class,
+                        EpollServerDomainSocketChannel.class, EpollDomainSocketChannel.class, EpollEventLoopGroup::new);
+            }
+            if (explicit) {
+                log.warn("epoll 不可用，退回 NIO: {}", String.valueOf(Epoll.unavailabilityCause()));
+            }
+        } catch (Throwable e) {
+            // 缺少 netty-transport-native-epoll 时 Epoll 类本身加载不了
+            if (explicit) {
+                log.warn("epoll 不可用，退回 NIO: {}", e.toString());
+            }
+        }
+        return null;
+    }
+
+    private static Transport ioUring() {
+        try {
+            Class<?> ioUring = Class.forName(IO_URING_PACKAGE + "IOUring");
+            if (!(Boolean) ioUring.getMethod("isAvailable").invoke(null)) {
+                log.warn("io_uring 不可用，退回 epoll / NIO: {}", ioUring.getMethod("unavailabilityCause").invoke(null));
+                return null;
+            }
+            Constructor<?> groupConstructor = Class.forName(IO_URING_PACKAGE + "IOUringEventLoopGroup")
+                    .getConstructor(int.class, ThreadFactory.class);
+            Class<? extends ServerChannel> serverChannelClass = Class.forName(IO_URING_PACKAGE + "IOUringServerSocketChannel")
+                    .asSubclass(ServerChannel.class);
+            Class<? extends SocketChannel> channelClass = Class.forName(IO_URING_PACKAGE + "IOUringSocketChannel")
+                    .asSubclass(SocketChannel.class);
+            return new Transport(TransportTypeEnum.IO_URING, serverChannelClass, channelClass, (threads, threadFactory) -> {
+                try {
+                    return (EventLoopGroup) groupConstructor.newInstance(threads, threadFactory);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException("创建 io_uring 线程组失败", e);
+                }
+            });
+        } catch (ClassNotFoundException e) {
+            log.warn("没有找到 netty-incubator-transport-native-io_uring，退回 epoll / NIO");
+        } catch (Throwable e) {
+            log.warn("io_uring 不可用，退回 epoll / NIO: {}", e.toString());
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface GroupFactory {
+        EventLoopGroup create(int threads, ThreadFactory threadFactory);
+    }
+
+    @Override
+    public String toString() {
+        return type.name().toLowerCase();
+    }
+}
@@ -0,0 +1,144 @@
+package com.lightrpc.core.loadbalance;
+
+import com.lightrpc.core.config.RpcClientConfig;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final InetSocketAddress ADDRESS = InetSocketAddress.createUnresolved("127.0.0.1", 8080);
+
+    private static final long LATENCY = 1_000_000;
+
+    private static CircuitBreaker breaker(long ejectionMillis) {
+        return new CircuitBreaker(ADDRESS, config(ejectionMillis));
+    }
+
+    private static RpcClientConfig config(long ejectionMillis) {
+        RpcClientConfig config = new RpcClientConfig();
+        config.setBreakerConsecutiveFailures(3);
+        config.setBreakerMinRequests(4);
+        config.setBreakerFailureRatio(0.5);
+        config.setEjectionMillis(ejectionMillis);
+        return config;
+    }
+
+    /**
+     * 打开熔断器并让摘除立即到期
+     */
+    private static CircuitBreaker openAndDue() {
+        CircuitBreaker breaker = breaker(0);
+        for (int i = 0; i < 3; i++) {
+            breaker.record(false, LATENCY, false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = breaker(30_000);
+        assertFalse(breaker.record(false, LATENCY, false));
+        assertFalse(breaker.record(false, LATENCY, false));
+        assertTrue(breaker.record(false, LATENCY, false));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        // 摘除还没到期，不能探测
+        assertFalse(breaker.tryProbe());
+    }
+
+    @Test
+    void successResetsConsecutiveFailures() {
+        RpcClientConfig config = config(30_000);
+        // 只看连续失败，不让失败率触发熔断
+        config.setBreakerFailureRatio(1.0);
+        CircuitBreaker breaker = new CircuitBreaker(ADDRESS, config);
+        breaker.record(false, LATENCY, false);
+        breaker.record(false, LATENCY, false);
+        breaker.record(true, LATENCY, false);
+        breaker.record(false, LATENCY, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void opensWhenFailureRatioIsReached() {
+        CircuitBreaker breaker = breaker(30_000);
+        breaker.record(true, LATENCY, false);
+        breaker.record(false, LATENCY, false);
+        breaker.record(true, LATENCY, false);
+        assertTrue(breaker.record(false, LATENCY, false));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void onlyOneProbeAtATime() {
+        CircuitBreaker breaker = openAndDue();
+        assertTrue(breaker.tryProbe());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryProbe());
+        assertFalse(breaker.isAvailable());
+    }
+
+    @Test
+    void successfulProbeCloses() {
+        CircuitBreaker breaker = openAndDue();
+        breaker.tryProbe();
+        // 摘除前发出的请求这时才返回，不影响探测
+        assertFalse(breaker.record(true, LATENCY, false));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        assertTrue(breaker.record(true, LATENCY, true));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.isAvailable());
+    }
+
+    @Test
+    void failedProbeReopensForLonger() throws InterruptedException {
+        CircuitBreaker breaker = breaker(100);
+        for (int i = 0; i < 3; i++) {
+            breaker.record(false, LATENCY, false);
+        }
+        Thread.sleep(130);
+        assertTrue(breaker.tryProbe());
+
+        assertTrue(breaker.record(false, LATENCY, true));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // 第二次摘除 200ms，过了第一次的摘除时长还没到期
+        Thread.sleep(130);
+        assertFalse(breaker.tryProbe());
+    }
+
+    @Test
+    void cancelledProbeHandsBackTheSlot() {
+        CircuitBreaker breaker = openAndDue();
+        assertTrue(breaker.tryProbe());
+
+        assertTrue(breaker.releaseProbe());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // 交还后立即可以再探测，不会一直卡在半开状态
+        assertTrue(breaker.tryProbe());
+        assertTrue(breaker.record(true, LATENCY, true));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void releaseProbeOutsideHalfOpenDoesNothing() {
+        CircuitBreaker breaker = breaker(30_000);
+        assertFalse(breaker.releaseProbe());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        for (int i = 0; i < 3; i++) {
+            breaker.record(false, LATENCY, false);
+        }
+        assertFalse(breaker.releaseProbe());
+        assertFalse(breaker.tryProbe());
+    }
+}
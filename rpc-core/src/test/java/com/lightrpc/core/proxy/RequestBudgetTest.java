@@ -0,0 +1,52 @@
+package com.lightrpc.core.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestBudgetTest {
+
+    @Test
+    void startsFull() {
+        RequestBudget budget = new RequestBudget(0.1, 2);
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void refillsByRatio() {
+        RequestBudget budget = new RequestBudget(0.1, 1);
+        assertTrue(budget.tryWithdraw());
+
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    void doesNotGrowBeyondCapacity() {
+        RequestBudget budget = new RequestBudget(0.5, 3);
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+        }
+        for (int i = 0; i < 3; i++) {
+            assertTrue(budget.tryWithdraw());
+        }
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void zeroRatioNeverRefills() {
+        RequestBudget budget = new RequestBudget(0, 1);
+        assertTrue(budget.tryWithdraw());
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+    }
+}
@@ -0,0 +1,90 @@
+package com.lightrpc.registry;
+
+import lombok.Getter;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 服务实例
+ * 注册中心返回的一个可调用地址，以及负载均衡需要的权重和元数据
+ * 创建后不可修改，两个实例地址相同即视为同一个实例
+ */
+@Getter
+public class ServiceInstance {
+
+    /**
+     * 默认权重 (对应 Nacos 权重 1.0)
+     */
+    public static final int DEFAULT_WEIGHT = 100;
+
+    /**
+     * 元数据 Key：服务端注册的时间 (毫秒时间戳)，客户端据此对刚启动的实例做预热
+     */
+    public static final String METADATA_TIMESTAMP = "timestamp";
+
+    /**
+     * 元数据 Key：服务端监听的 Unix Domain Socket 路径，同一台机器上的客户端可以不走 TCP
+     */
+    public static final String METADATA_UDS_PATH = "uds";
+
+    /**
+     * 元数据 Key：服务端绑定的 Netty LocalChannel 名称，同一个 JVM 里的客户端可以不走网络
+     */
+    public static final String METADATA_LOCAL_CHANNEL = "localChannel";
+
+    private final InetSocketAddress address;
+
+    /**
+     * 权重，必须大于 0
+     */
+    private final int weight;
+
+    /**
+     * 实例元数据 (只读)
+     */
+    private final Map<String, String> metadata;
+
+    public ServiceInstance(InetSocketAddress address) {
+        this(address, DEFAULT_WEIGHT, Collections.emptyMap());
+    }
+
+    public ServiceInstance(InetSocketAddress address, int weight, Map<String, String> metadata) {
+        this.address = address;
+        this.weight = weight;
+        this.metadata = metadata == null || metadata.isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(metadata);
+    }
+
+    /**
+     * 服务端注册的时间 (毫秒时间戳)，注册中心没有提供时返回 0
+     */
+    public long getRegisteredAt() {
+        String timestamp = metadata.get(METADATA_TIMESTAMP);
+        if (timestamp == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof ServiceInstance && address.equals(((ServiceInstance) o).address);
+    }
+
+    @Override
+    public int hashCode() {
+        return address.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return address.getHostString() + ":" + address.getPort() + "(weight=" + weight + ")";
+    }
+}
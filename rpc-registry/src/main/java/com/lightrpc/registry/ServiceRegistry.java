@@ -1,6 +1,9 @@
 package com.lightrpc.registry;
 
 import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 注册中心接口
@@ -15,9 +18,41 @@ public interface ServiceRegistry {
     void register(String serviceName, InetSocketAddress inetSocketAddress);
 
     /**
-     * 服务发现
+     * 注册服务，同时带上实例元数据 (例如同机调用使用的 Unix Domain Socket 路径)
+     * 默认忽略元数据，不支持元数据的注册中心不需要实现
+     * @param metadata 实例元数据，会和注册中心自己写入的元数据 (如注册时间) 合并
+     */
+    default void register(String serviceName, InetSocketAddress inetSocketAddress, Map<String, String> metadata) {
+        register(serviceName, inetSocketAddress);
+    }
+
+    /**
+     * 注销服务 (服务端停机时调用，客户端收到通知后不再向这个地址发请求)
+     * 默认什么都不做，实例列表不由服务端维护的注册中心不需要实现
+     * @param serviceName 服务名称
+     * @param inetSocketAddress 服务地址
+     */
+    default void deregister(String serviceName, InetSocketAddress inetSocketAddress) {
+    }
+
+    /**
+     * 服务发现：返回全部可用实例，由客户端的负载均衡器选择
+     * 返回只读快照，实例列表没有变化时应返回同一个对象 (负载均衡器据此复用内部状态)
+     * @param serviceName 服务名称
+     * @return 可用实例列表，没有实例时返回空列表
+     */
+    List<ServiceInstance> lookupAll(String serviceName);
+
+    /**
+     * 服务发现：随机返回一个实例的地址
      * @param serviceName 服务名称
-     * @return 服务地址
+     * @return 服务地址，没有可用实例时返回 null
      */
-    InetSocketAddress lookup(String serviceName);
+    default InetSocketAddress lookup(String serviceName) {
+        List<ServiceInstance> instances = lookupAll(serviceName);
+        if (instances.isEmpty()) {
+            return null;
+        }
+        return instances.get(ThreadLocalRandom.current().nextInt(instances.size())).getAddress();
+    }
 }
@@ -0,0 +1,193 @@
+package com.lightrpc.registry.impl;
+
+import com.lightrpc.common.util.ServiceKeyUtil;
+import com.lightrpc.registry.ServiceInstance;
+import com.lightrpc.registry.ServiceRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于配置文件的注册中心，适合没有 Nacos 的小规模静态集群
+ * 文件格式 (UTF-8)，每行一个服务，# 开头为注释：
+ * <pre>
+ * # 服务标识=地址列表，地址格式 host:port 或 host:port:weight (默认权重 100)
+ * # 服务标识为 接口全类名:版本[:分组]，只写接口全类名时表示默认版本、不分组
+ * com.lightrpc.api.user.UserService:1.0=10.0.0.1:9000,10.0.0.2:9000:200
+ * com.lightrpc.api.user.UserService:2.0:gray=10.0.0.3:9000
+ * </pre>
+ * 文件修改后自动重新加载，解析完成后整体替换快照，读取方不会被阻塞；
+ * 文件内容有误时保留上一次的快照
+ * 服务端调用 register 不会修改文件，实例列表只以文件为准
+ */
+@Slf4j
+public class FileServiceRegistry implements ServiceRegistry, Closeable {
+
+    private final Path file;
+
+    /**
+     * 当前快照，重新加载时整体替换
+     */
+    private volatile Map<String, List<ServiceInstance>> instanceCache = Collections.emptyMap();
+
+    private final WatchService watchService;
+
+    /**
+     * @param file 配置文件路径，启动时必须存在且格式正确
+     */
+    public FileServiceRegistry(String file) {
+        this.file = Paths.get(file).toAbsolutePath();
+        try {
+            this.instanceCache = load(Collections.emptyMap());
+            // 监听的是文件所在目录，编辑器保存时往往是先写临时文件再改名
+            this.watchService = this.file.getFileSystem().newWatchService();
+            this.file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            log.error("加载注册中心配置文件失败: {}", file, e);
+            throw new RuntimeException("加载注册中心配置文件失败: " + file, e);
+        }
+
+        Thread watcher = new Thread(this::watch, "rpc-registry-file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("已加载注册中心配置文件: {}, 服务: {}", this.file, instanceCache.keySet());
+    }
+
+    @Override
+    public void register(String serviceName, InetSocketAddress inetSocketAddress) {
+        log.info("实例列表由配置文件 {} 维护，忽略注册: {} -> {}", file, serviceName, inetSocketAddress);
+    }
+
+    @Override
+    public void deregister(String serviceName, InetSocketAddress inetSocketAddress) {
+        log.info("实例列表由配置文件 {} 维护，忽略注销: {} -> {}", file, serviceName, inetSocketAddress);
+    }
+
+    @Override
+    public List<ServiceInstance> lookupAll(String serviceName) {
+        List<ServiceInstance> instances = instanceCache.get(serviceName);
+        if (instances == null) {
+            log.error("未找到服务[{}]的可用实例", serviceName);
+            return Collections.emptyList();
+        }
+        return instances;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.info("停止监听注册中心配置文件: {}", file);
+        }
+    }
+
+    private void reload() {
+        try {
+            instanceCache = load(instanceCache);
+            log.info("注册中心配置文件已重新加载: {}, 服务: {}", file, instanceCache.keySet());
+        } catch (Exception e) {
+            // 文件可能正写了一半，继续使用旧快照，等下一次修改事件
+            log.warn("重新加载注册中心配置文件失败，继续使用上一次的实例列表: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 解析配置文件
+     * 实例没有变化的服务沿用旧快照对象，负载均衡器的状态 (轮询位置、哈希环) 不会被重置
+     */
+    private Map<String, List<ServiceInstance>> load(Map<String, List<ServiceInstance>> previous) throws IOException {
+        Map<String, List<ServiceInstance>> result = new HashMap<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            // 服务名里可能带冒号 (接口:版本:分组)，只按第一个等号切分
+            int separator = line.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 行格式错误: " + line);
+            }
+            String serviceName = line.substring(0, separator).trim();
+            if (serviceName.indexOf(':') < 0) {
+                // 只写了接口名：补上默认版本，和客户端查找时用的服务标识一致
+                serviceName = ServiceKeyUtil.build(serviceName, null, null);
+            }
+            List<ServiceInstance> instances = new ArrayList<>();
+            for (String address : line.substring(separator + 1).split(",")) {
+                if (!address.trim().isEmpty()) {
+                    instances.add(parseInstance(address.trim(), i + 1));
+                }
+            }
+
+            List<ServiceInstance> old = previous.get(serviceName);
+            result.put(serviceName, sameInstances(old, instances) ? old : Collections.unmodifiableList(instances));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static ServiceInstance parseInstance(String address, int lineNumber) {
+        String[] parts = address.split(":");
+        if (parts.length != 2 && parts.length != 3) {
+            throw new IllegalArgumentException("第 " + lineNumber + " 行地址格式错误: " + address);
+        }
+        try {
+            int port = Integer.parseInt(parts[1]);
+            int weight = parts.length == 3 ? Integer.parseInt(parts[2]) : ServiceInstance.DEFAULT_WEIGHT;
+            if (weight <= 0) {
+                throw new IllegalArgumentException("第 " + lineNumber + " 行权重必须大于 0: " + address);
+            }
+            return new ServiceInstance(new InetSocketAddress(parts[0], port), weight, null);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("第 " + lineNumber + " 行地址格式错误: " + address, e);
+        }
+    }
+
+    private static boolean sameInstances(List<ServiceInstance> old, List<ServiceInstance> instances) {
+        if (old == null || old.size() != instances.size()) {
+            return false;
+        }
+        for (int i = 0; i < old.size(); i++) {
+            if (!old.get(i).equals(instances.get(i)) || old.get(i).getWeight() != instances.get(i).getWeight()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
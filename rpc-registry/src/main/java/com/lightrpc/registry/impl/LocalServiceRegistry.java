@@ -0,0 +1,65 @@
+package com.lightrpc.registry.impl;
+
+import com.lightrpc.registry.ServiceInstance;
+import com.lightrpc.registry.ServiceRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内注册中心
+ * 服务端和客户端在同一个 JVM 里共用一个实例即可，适合压测、基准测试和单元测试，没有任何外部依赖
+ * 每次注册/注销都生成新的只读快照，lookupAll 无锁读取
+ */
+@Slf4j
+public class LocalServiceRegistry implements ServiceRegistry {
+
+    private final Map<String, List<ServiceInstance>> instanceCache = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(String serviceName, InetSocketAddress inetSocketAddress) {
+        register(serviceName, inetSocketAddress, Collections.emptyMap());
+    }
+
+    @Override
+    public void register(String serviceName, InetSocketAddress inetSocketAddress, Map<String, String> extraMetadata) {
+        Map<String, String> metadata = new HashMap<>(extraMetadata);
+        metadata.put(ServiceInstance.METADATA_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
+        register(serviceName, new ServiceInstance(inetSocketAddress, ServiceInstance.DEFAULT_WEIGHT, metadata));
+    }
+
+    /**
+     * 注册一个带权重和元数据的实例，地址相同的实例会被替换
+     */
+    public void register(String serviceName, ServiceInstance instance) {
+        instanceCache.compute(serviceName, (key, old) -> {
+            List<ServiceInstance> instances = old == null ? new ArrayList<>() : new ArrayList<>(old);
+            instances.remove(instance);
+            instances.add(instance);
+            return Collections.unmodifiableList(instances);
+        });
+        log.info("服务注册成功: {} -> {}", serviceName, instance);
+    }
+
+    @Override
+    public void deregister(String serviceName, InetSocketAddress inetSocketAddress) {
+        instanceCache.computeIfPresent(serviceName, (key, old) -> {
+            List<ServiceInstance> instances = new ArrayList<>(old);
+            instances.remove(new ServiceInstance(inetSocketAddress));
+            return instances.isEmpty() ? null : Collections.unmodifiableList(instances);
+        });
+        log.info("服务注销成功: {} -> {}", serviceName, inetSocketAddress);
+    }
+
+    @Override
+    public List<ServiceInstance> lookupAll(String serviceName) {
+        List<ServiceInstance> instances = instanceCache.get(serviceName);
+        return instances != null ? instances : Collections.emptyList();
+    }
+}
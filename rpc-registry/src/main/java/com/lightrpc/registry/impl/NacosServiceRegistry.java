@@ -1,20 +1,41 @@
 package com.lightrpc.registry.impl;
 
+import com.alibaba.nacos.api.PropertyKeyConst;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.lightrpc.registry.ServiceInstance;
 import com.lightrpc.registry.ServiceRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class NacosServiceRegistry implements ServiceRegistry {
 
     private NamingService namingService;
 
+    /**
+     * 本地实例缓存：服务名 -> 实例快照
+     * 快照创建后不再修改，Nacos 推送变更时整体替换，lookupAll 无锁读取
+     */
+    private final Map<String, List<ServiceInstance>> instanceCache = new ConcurrentHashMap<>();
+
+    /**
+     * 已订阅的服务，避免重复注册监听器
+     */
+    private final Map<String, EventListener> listeners = new ConcurrentHashMap<>();
+
     /**
      * 构造函数：连接 Nacos
      * @param serverAddr Nacos 服务地址，例如 "127.0.0.1:8848"
@@ -22,7 +43,11 @@ public class NacosServiceRegistry implements ServiceRegistry {
     public NacosServiceRegistry(String serverAddr) {
         try {
             // NamingFactory 是 Nacos 提供的工厂类，用于创建 NamingService
-            namingService = NamingFactory.createNamingService(serverAddr);
+            Properties properties = new Properties();
+            properties.setProperty(PropertyKeyConst.SERVER_ADDR, serverAddr);
+            // Nacos 不可用时推送的空列表不覆盖本地缓存，继续使用旧的实例列表
+            properties.setProperty(PropertyKeyConst.NAMING_PUSH_EMPTY_PROTECTION, "true");
+            namingService = NamingFactory.createNamingService(properties);
         } catch (NacosException e) {
             log.error("连接 Nacos 发生异常: ", e);
             throw new RuntimeException("连接 Nacos 失败");
@@ -31,11 +56,24 @@ public class NacosServiceRegistry implements ServiceRegistry {
 
     @Override
     public void register(String serviceName, InetSocketAddress inetSocketAddress) {
+        register(serviceName, inetSocketAddress, Collections.emptyMap());
+    }
+
+    @Override
+    public void register(String serviceName, InetSocketAddress inetSocketAddress, Map<String, String> extraMetadata) {
+        // 注册时间写进元数据，客户端据此对刚启动的实例做预热
+        Instance instance = new Instance();
+        instance.setIp(inetSocketAddress.getHostName());
+        instance.setPort(inetSocketAddress.getPort());
+        Map<String, String> metadata = new HashMap<>(extraMetadata);
+        metadata.put(ServiceInstance.METADATA_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
+        instance.setMetadata(metadata);
+
         int maxRetries = 5;
         int retryCount = 0;
         while (retryCount < maxRetries) {
             try {
-                namingService.registerInstance(serviceName, inetSocketAddress.getHostName(), inetSocketAddress.getPort());
+                namingService.registerInstance(serviceName, instance);
                 return; // 注册成功，直接返回
             } catch (Exception e) { // 捕获 NacosException 和 RuntimeException
                 retryCount++;
@@ -53,26 +91,79 @@ public class NacosServiceRegistry implements ServiceRegistry {
     }
 
     @Override
-    public InetSocketAddress lookup(String serviceName) {
+    public void deregister(String serviceName, InetSocketAddress inetSocketAddress) {
         try {
-            List<Instance> allInstances = namingService.getAllInstances(serviceName);
+            namingService.deregisterInstance(serviceName, inetSocketAddress.getHostName(), inetSocketAddress.getPort());
+            log.info("服务注销成功: {} -> {}", serviceName, inetSocketAddress);
+        } catch (NacosException e) {
+            // 注销失败也不影响停机，Nacos 的健康检查最终会摘掉这个实例
+            log.warn("服务注销失败: {} -> {}, 异常信息: {}", serviceName, inetSocketAddress, e.getMessage());
+        }
+    }
 
-            if (allInstances == null || allInstances.isEmpty()) {
-                log.error("未找到服务[{}]的可用实例", serviceName);
-                return null;
-            }
+    @Override
+    public List<ServiceInstance> lookupAll(String serviceName) {
+        // 绝大多数调用直接命中本地缓存，不访问 Nacos
+        List<ServiceInstance> instances = instanceCache.get(serviceName);
+        if (instances == null) {
+            instances = subscribe(serviceName);
+        }
 
-            // --- 负载均衡 (Load Balance) ---
-            // 这里实现一个最简单的：随机 (Random)
-            // 生产环境可以把这一块拆分成独立的 LoadBalancer 接口
-            Instance instance = allInstances.get((int) (Math.random() * allInstances.size()));
+        if (instances == null || instances.isEmpty()) {
+            log.error("未找到服务[{}]的可用实例", serviceName);
+            return Collections.emptyList();
+        }
+        return instances;
+    }
 
-            log.info("服务发现成功，负载均衡选择: {}:{}", instance.getIp(), instance.getPort());
-            return new InetSocketAddress(instance.getIp(), instance.getPort());
+    /**
+     * 第一次发现某个服务时订阅它，之后实例变化由 Nacos 推送更新本地缓存
+     * 拉取失败时返回 null，下次调用会再次尝试
+     */
+    private synchronized List<ServiceInstance> subscribe(String serviceName) {
+        List<ServiceInstance> cached = instanceCache.get(serviceName);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            // 先订阅再拉取全量，订阅之后发生的变更不会漏掉
+            if (!listeners.containsKey(serviceName)) {
+                EventListener listener = event -> {
+                    if (event instanceof NamingEvent) {
+                        List<ServiceInstance> instances = toServiceInstances(((NamingEvent) event).getInstances());
+                        instanceCache.put(serviceName, instances);
+                        log.info("服务[{}]实例变更，当前可用实例: {}", serviceName, instances);
+                    }
+                };
+                namingService.subscribe(serviceName, listener);
+                listeners.put(serviceName, listener);
+            }
 
+            List<ServiceInstance> instances = toServiceInstances(namingService.selectInstances(serviceName, true));
+            // 推送可能比这里先到，以推送的数据为准
+            List<ServiceInstance> previous = instanceCache.putIfAbsent(serviceName, instances);
+            return previous != null ? previous : instances;
         } catch (NacosException e) {
             log.error("服务发现失败", e);
             return null;
         }
     }
+
+    /**
+     * 只保留健康、启用且权重大于 0 的实例
+     * Nacos 权重是小数 (默认 1.0)，换算成整数权重 (默认 100)
+     */
+    private static List<ServiceInstance> toServiceInstances(List<Instance> instances) {
+        if (instances == null) {
+            return Collections.emptyList();
+        }
+        ServiceInstance[] snapshot = instances.stream()
+                .filter(instance -> instance.isHealthy() && instance.isEnabled() && instance.getWeight() > 0)
+                .map(instance -> new ServiceInstance(
+                        new InetSocketAddress(instance.getIp(), instance.getPort()),
+                        Math.max(1, (int) Math.round(instance.getWeight() * ServiceInstance.DEFAULT_WEIGHT)),
+                        instance.getMetadata()))
+                .toArray(ServiceInstance[]::new);
+        return Collections.unmodifiableList(Arrays.asList(snapshot));
+    }
 }
@@ -32,5 +32,10 @@ public class NettyTestClient {
                 log.error("RPC 调用异常", e);
             }
         }
+
+        // 4. 异步调用：不阻塞当前线程，响应到达时回调
+        userService.getUserAsync("LightRPC-Async")
+                .thenAccept(result -> log.info("RPC 异步调用结果: {}", result))
+                .join();
     }
 }
\ No newline at end of file
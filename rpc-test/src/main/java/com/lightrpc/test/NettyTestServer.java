@@ -20,6 +20,8 @@ public class NettyTestServer {
         // 模拟服务端启动，监听 6666 端口
         RpcServer server = new RpcServer("127.0.0.1", 6666, serviceRegistry);
         server.publishService("com.lightrpc.api.user.UserService", new UserServiceImpl());
+        // 进程退出 (kill / Ctrl+C) 时先注销服务、处理完在途请求再关闭
+        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
         server.start();
     }
 }
\ No newline at end of file
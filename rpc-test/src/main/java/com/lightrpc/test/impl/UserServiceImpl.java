@@ -1,9 +1,13 @@
 package com.lightrpc.test.impl;
 
+import com.lightrpc.api.stream.RpcStream;
 import com.lightrpc.api.user.UserService;
 import com.lightrpc.core.annotation.LightRpcService;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
 @Slf4j
 @LightRpcService
 public class UserServiceImpl implements UserService {
@@ -12,4 +16,17 @@ public class UserServiceImpl implements UserService {
         log.info("【服务端】UserServiceImpl 收到查询请求，参数 name: {}", username);
         return username;
     }
+
+    @Override
+    public CompletableFuture<String> getUserAsync(String username) {
+        log.info("【服务端】UserServiceImpl 收到异步查询请求，参数 name: {}", username);
+        return CompletableFuture.completedFuture(username);
+    }
+
+    @Override
+    public RpcStream<String> listUsers(String prefix, int count) {
+        log.info("【服务端】UserServiceImpl 收到流式查询请求，参数 prefix: {}, count: {}", prefix, count);
+        // 元素在发送时才生成，客户端读得慢时这里也会暂停
+        return RpcStream.of(IntStream.range(0, count).mapToObj(i -> prefix + i).iterator());
+    }
 }